@@ -9,6 +9,8 @@ import javax.swing.UIManager;
 import javax.swing.UnsupportedLookAndFeelException;
 
 import main.java.gui.cards.MainWindow;
+import main.java.logic.translation.api.openai.OpenAIClient;
+import main.java.logic.translation.cache.CacheCompactor;
 import main.java.util.resources.ResourceLoader;
 
 public class FileLingualApp {
@@ -17,6 +19,12 @@ public class FileLingualApp {
      * Launch the application.
      */
     public static void main(String[] args) {
+	// Release the API client and the cache on exit
+	Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+	    OpenAIClient.shutdown();
+	    CacheCompactor.shutdownAll();
+	}, "shutdown"));
+
 	EventQueue.invokeLater(new Runnable() {
 	    @Override
 	    public void run() {
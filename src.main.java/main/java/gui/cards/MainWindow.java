@@ -3,6 +3,8 @@ package main.java.gui.cards;
 import java.awt.CardLayout;
 import java.awt.SystemColor;
 import java.awt.Toolkit;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.File;
@@ -13,14 +15,17 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Properties;
 import java.util.ResourceBundle;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.Box;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.SwingWorker;
 import javax.swing.UIManager;
 
 import main.java.gui.cards.app.CardAuto;
@@ -40,6 +45,7 @@ import main.java.logic.file.locales.LocaleFile;
 import main.java.logic.image.Vision;
 import main.java.logic.speech.Speech;
 import main.java.logic.translation.TranslationManager;
+import main.java.logic.translation.cache.TransferReport;
 import main.java.util.exception.IdeException;
 import main.java.util.exception.ImageException;
 import main.java.util.exception.IncompleteResultsException;
@@ -403,6 +409,131 @@ public class MainWindow extends JFrame {
 		    code.substring(1, code.length() - 1)));
 	    mnLanguage.add(menuItems.get(i));
 	}
+
+	// Clearing the translation cache
+	JMenuItem clearCache = new JMenuItem(
+		messages.getString("menu.cache.clear"));
+	clearCache.setForeground(UIManager.getColor("Button.shadow"));
+	clearCache.addActionListener(new ActionListener() {
+	    @Override
+	    public void actionPerformed(ActionEvent e) {
+		clearCache();
+	    }
+	});
+	JMenuItem importCache = new JMenuItem(
+		messages.getString("menu.cache.import"));
+	importCache.setForeground(UIManager.getColor("Button.shadow"));
+	importCache.addActionListener(new ActionListener() {
+	    @Override
+	    public void actionPerformed(ActionEvent e) {
+		transferCache(true);
+	    }
+	});
+	JMenuItem exportCache = new JMenuItem(
+		messages.getString("menu.cache.export"));
+	exportCache.setForeground(UIManager.getColor("Button.shadow"));
+	exportCache.addActionListener(new ActionListener() {
+	    @Override
+	    public void actionPerformed(ActionEvent e) {
+		transferCache(false);
+	    }
+	});
+	mnLanguage.addSeparator();
+	mnLanguage.add(importCache);
+	mnLanguage.add(exportCache);
+	mnLanguage.add(clearCache);
+    }
+
+    /**
+     * Clears all past translations from the translation cache, once the user
+     * has confirmed it. The database is cleared in the background, so that the
+     * window does not freeze meanwhile.
+     */
+    public void clearCache() {
+	if (JOptionPane.showConfirmDialog(this,
+		messages.getString("label.cache.clear"), "FileLingual",
+		JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION) {
+	    return;
+	}
+
+	new SwingWorker<Void, Void>() {
+	    @Override
+	    protected Void doInBackground() throws SQLException {
+		translator.clearCache();
+		return null;
+	    }
+
+	    @Override
+	    protected void done() {
+		try {
+		    get();
+		    JOptionPane.showMessageDialog(MainWindow.this,
+			    messages.getString("label.cache.cleared"),
+			    "FileLingual", JOptionPane.INFORMATION_MESSAGE);
+		} catch (InterruptedException | ExecutionException e) {
+		    showErrorMessage(getCause(e), false);
+		}
+	    }
+	}.execute();
+    }
+
+    /**
+     * Imports past translations into the translation cache, or exports them,
+     * from/to a TMX or TSV file chosen by the user. The transfer runs in the
+     * background, as files may hold millions of translations; meanwhile, its
+     * progress is shown on the title of the window.
+     * 
+     * @param isImport true to import translations, false to export them
+     */
+    public void transferCache(boolean isImport) {
+	JFileChooser chooser = new JFileChooser();
+	int option = isImport ? chooser.showOpenDialog(this)
+		: chooser.showSaveDialog(this);
+	if (option != JFileChooser.APPROVE_OPTION) {
+	    return;
+	}
+
+	File file = chooser.getSelectedFile();
+	new SwingWorker<TransferReport, TransferReport>() {
+	    @Override
+	    protected TransferReport doInBackground()
+		    throws IOException, SQLException {
+		return isImport ? translator.importCache(file, this::publish)
+			: translator.exportCache(file, this::publish);
+	    }
+
+	    @Override
+	    protected void process(List<TransferReport> reports) {
+		setTitle(String.format(messages.getString("label.cache.progress"),
+			reports.get(reports.size() - 1).getTranslations()));
+	    }
+
+	    @Override
+	    protected void done() {
+		setTitle("FileLingual");
+		try {
+		    TransferReport report = get();
+		    JOptionPane.showMessageDialog(MainWindow.this,
+			    String.format(
+				    messages.getString("label.cache.transfer"),
+				    report.getTranslations(),
+				    report.getSkipped()),
+			    "FileLingual", JOptionPane.INFORMATION_MESSAGE);
+		} catch (InterruptedException | ExecutionException e) {
+		    showErrorMessage(getCause(e), false);
+		}
+	    }
+	}.execute();
+    }
+
+    /*
+     * Actual failure of some work carried out in the background.
+     */
+    private Exception getCause(Exception e) {
+	if (e instanceof InterruptedException) {
+	    Thread.currentThread().interrupt();
+	}
+	return e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
     }
 
     public void localize(Locale locale) {
@@ -505,8 +636,11 @@ public class MainWindow extends JFrame {
 	} catch (IOException ide) {
 	    this.showErrorMessage(new IdeException(messages), false);
 	} catch (TranslationException te) {
-	    this.showErrorMessage(
-		    new TranslationException(messages, te.isManual()), false);
+	    this.showErrorMessage(te.getFailedLanguages().isEmpty()
+		    ? new TranslationException(messages, te.isManual())
+		    : new TranslationException(messages,
+			    te.getFailedLanguages()),
+		    false);
 
 	    // Any other type of exception during translator process
 	    // Go back to mode
@@ -695,6 +829,9 @@ public class MainWindow extends JFrame {
 	try {
 	    if (path == null) {
 		translator.setAutoMode();
+		// Translations are shown as soon as they are received
+		getCardAuto();
+		translator.setListener(cardAuto.getProgressListener());
 		manualMode = false;
 	    } else {
 		translator.setManualMode();
@@ -9,6 +9,7 @@ import java.awt.SystemColor;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
@@ -22,6 +23,7 @@ import javax.swing.SwingUtilities;
 import main.java.gui.cards.MainWindow;
 import main.java.gui.cards.help.HelpResults;
 import main.java.gui.util.BusyPanel;
+import main.java.logic.translation.api.TranslationListener;
 import main.java.util.exception.ResourceException;
 import main.java.util.resources.ResourceLoader;
 
@@ -55,6 +57,9 @@ public class CardAuto extends JPanel {
     // Threads
     private Thread translationTask;
 
+    // Translations received so far (while translating)
+    private final AtomicInteger received = new AtomicInteger();
+
     /*
      * Mnemonics
      */
@@ -100,6 +105,7 @@ public class CardAuto extends JPanel {
      * Create and run the automatic translation task (new thread everytime).
      */
     public void run() {
+	received.set(0);
 	busyPanel.start();
 	this.translationTask = createThread();
 	this.translationTask.start();
@@ -124,6 +130,22 @@ public class CardAuto extends JPanel {
 	});
     }
 
+    /**
+     * @return listener that shows the translations as soon as they are
+     *         received, before the whole translation process is over
+     */
+    public TranslationListener getProgressListener() {
+	return (language, key, translation) -> {
+	    int count = received.incrementAndGet();
+	    SwingUtilities.invokeLater(new Runnable() {
+		@Override
+		public void run() {
+		    showProgress(count, language, translation);
+		}
+	    });
+	};
+    }
+
     public void setSourcePath(String path) {
 	this.sourcePath = path;
     }
@@ -143,6 +165,16 @@ public class CardAuto extends JPanel {
 	root.areResultsComplete();
     }
 
+    private void showProgress(int count, String language,
+	    String translation) {
+	String text = translation.length() > 40
+		? translation.substring(0, 37) + "..."
+		: translation;
+	lblTime.setText(String.format(
+		root.getMessages().getString("label.auto.subtitle.progress"),
+		count, language, text));
+    }
+
     public void reset() {
 	// root.reset();
 	busyPanel.stop(true);
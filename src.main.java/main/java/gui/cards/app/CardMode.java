@@ -70,7 +70,6 @@ public class CardMode extends JPanel {
     private JList<JCheckBox> languagesMenu;
     private List<String> languages = new ArrayList<>();
     private List<String> selectedLanguages = new ArrayList<>();
-    private static int maxLangs = Integer.MAX_VALUE;
     private JScrollPane scrollPane;
 
     /*
@@ -148,8 +147,8 @@ public class CardMode extends JPanel {
 	// Disable 'next' button
 	btnNext_Mode.setEnabled(false);
 
-	// Change text and maximum languages
-	changeMaxLangs();
+	// Change text of the languages
+	changeLanguagesText();
     }
 
     private boolean unlockNext() {
@@ -164,19 +163,8 @@ public class CardMode extends JPanel {
 	}
     }
 
-    private void changeMaxLangs() {
+    private void changeLanguagesText() {
 	if (btnAutomatic_Mode.isSelected()) {
-	    maxLangs = 3;
-	} else {
-	    maxLangs = Integer.MAX_VALUE;
-	}
-	changeMaxLangsText();
-    }
-
-    private void changeMaxLangsText() {
-	// Define a regular expression pattern to match the last number in the
-	// string
-	if (maxLangs < Integer.MAX_VALUE) {
 	    lblLanguage.setText(
 		    root.getMessages().getString("label.mode.language"));
 	} else {
@@ -337,34 +325,15 @@ public class CardMode extends JPanel {
 	    setFont(list.getFont());
 	    setOpaque(true);
 
-	    if (countSelectedItems() >= maxLangs) {
-		if (!value.isSelected()) {
-		    setEnabled(false);
-		    setVisible(false);
-		}
-	    } else {
-		if (languagesMenu.isEnabled()) {
-		    setEnabled(true);
-		    setVisible(true);
-
-		}
+	    if (languagesMenu.isEnabled()) {
+		setEnabled(true);
+		setVisible(true);
 	    }
 
 	    return this;
 	}
     }
 
-    private int countSelectedItems() {
-	int count = 0;
-	ListModel<JCheckBox> model = languagesMenu.getModel();
-	for (int i = 0; i < model.getSize(); i++) {
-	    if (model.getElementAt(i).isSelected()) {
-		count++;
-	    }
-	}
-	return count;
-    }
-
     /**
      * Builds the JList model (alphabetically-sorted languages that make up a
      * multi-selectable list).
@@ -388,12 +357,8 @@ public class CardMode extends JPanel {
 		public void itemStateChanged(ItemEvent e) {
 		    // Selection
 		    if (e.getStateChange() == ItemEvent.SELECTED) {
-			if (countSelectedItems() > maxLangs) {
-			    ((JCheckBox) e.getItem()).setSelected(false);
-			} else {
-			    selectedLanguages
-				    .add(((JCheckBox) e.getItem()).getText());
-			}
+			selectedLanguages
+				.add(((JCheckBox) e.getItem()).getText());
 			// Deselection
 		    } else {
 			selectedLanguages
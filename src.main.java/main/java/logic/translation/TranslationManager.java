@@ -1,5 +1,6 @@
 package main.java.logic.translation;
 
+import java.io.File;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.List;
@@ -8,6 +9,11 @@ import java.util.ResourceBundle;
 
 import main.java.logic.file.FileManager;
 import main.java.logic.file.locales.LocaleFile;
+import main.java.logic.translation.api.TranslationListener;
+import main.java.logic.translation.cache.CacheTransfer;
+import main.java.logic.translation.cache.TransferListener;
+import main.java.logic.translation.cache.TransferReport;
+import main.java.logic.translation.cache.TranslationCache;
 import main.java.logic.translation.mode.AutoTranslation;
 import main.java.logic.translation.mode.ManualTranslation;
 import main.java.logic.translation.mode.TranslationMode;
@@ -26,6 +32,7 @@ public class TranslationManager {
 
     private static FileManager files;
     private TranslationMode translator;
+    private TranslationListener listener;
 
     public TranslationManager(ResourceBundle messages)
 	    throws ResourceException {
@@ -35,15 +42,16 @@ public class TranslationManager {
 
     /**
      * Translates a source file, according to the specified translation mode,
-     * into a given target language (can be more than 1! - and a maximum of 3).
+     * into a given target language (can be more than 1! - as many as needed).
+     * In automatic mode, several target files are translated at the same
+     * time, and a failure in any of them does not stop the rest.
      * 
      * @throws TranslationException specifically caused by issues with automatic
-     *                              translation (api and database access)
+     *                              translation (api and database access), with
+     *                              the languages that could not be translated
      */
     public void translateAll() throws TranslationException {
-	for (LocaleFile f : files.getTargetFiles()) {
-	    translator.translate(f);
-	}
+	translator.translateAll(files.getTargetFiles());
     }
 
     /*
@@ -133,12 +141,12 @@ public class TranslationManager {
      * translation process.
      */
     public void reset() {
-	translator = null;
+	setTranslator(null);
 	files.reset();
     }
 
     public void resetLanguages() {
-	translator = null;
+	setTranslator(null);
 	files.resetLanguages();
     }
 
@@ -189,16 +197,109 @@ public class TranslationManager {
     }
 
     public void setAutoMode() throws ResourceException, SQLException {
-	this.translator = new AutoTranslation(files.getSourceFile());
+	setTranslator(new AutoTranslation(files.getSourceFile()));
+	setListener(listener);
     }
 
     public void setAutoMode(TranslationMode automaticTranslator)
 	    throws ResourceException, SQLException {
-	this.translator = automaticTranslator;
+	setTranslator(automaticTranslator);
+	setListener(listener);
+    }
+
+    /**
+     * Sets the listener of the translations received in automatic mode, so
+     * that they can be shown as soon as they arrive (before all of them are
+     * over).
+     * 
+     * @param listener of translations (null for none)
+     */
+    public void setListener(TranslationListener listener) {
+	this.listener = listener;
+	if (translator instanceof AutoTranslation) {
+	    ((AutoTranslation) translator).setListener(listener);
+	}
     }
 
     public void setManualMode() {
-	this.translator = new ManualTranslation();
+	setTranslator(new ManualTranslation());
+    }
+
+    /**
+     * Clears the translation cache, removing all past translations from it.
+     * 
+     * @throws SQLException in case of issues accessing the cache database
+     */
+    public void clearCache() throws SQLException {
+	TranslationCache cache = new TranslationCache();
+	try {
+	    cache.reset();
+	} finally {
+	    cache.closeConnection();
+	}
+    }
+
+    /**
+     * Imports the translations of a TMX or TSV (*.tsv) file into the
+     * translation cache.
+     * 
+     * @param file     TMX or TSV file
+     * @param listener to be notified of the progress of the import (null for
+     *                 none)
+     * @return report of the import
+     * @throws IOException  if the file cannot be read
+     * @throws SQLException in case of issues accessing the cache database
+     */
+    public TransferReport importCache(File file, TransferListener listener)
+	    throws IOException, SQLException {
+	TranslationCache cache = new TranslationCache();
+	try {
+	    CacheTransfer transfer = new CacheTransfer(cache);
+	    transfer.setListener(listener);
+	    return isTsv(file) ? transfer.importTsv(file.toPath())
+		    : transfer.importTmx(file.toPath());
+	} finally {
+	    cache.closeConnection();
+	}
+    }
+
+    /**
+     * Exports all translations of the translation cache into a TMX or TSV
+     * (*.tsv) file.
+     * 
+     * @param file     TMX or TSV file
+     * @param listener to be notified of the progress of the export (null for
+     *                 none)
+     * @return report of the export
+     * @throws IOException  if the file cannot be written
+     * @throws SQLException in case of issues accessing the cache database
+     */
+    public TransferReport exportCache(File file, TransferListener listener)
+	    throws IOException, SQLException {
+	TranslationCache cache = new TranslationCache();
+	try {
+	    CacheTransfer transfer = new CacheTransfer(cache);
+	    transfer.setListener(listener);
+	    return isTsv(file) ? transfer.exportTsv(file.toPath())
+		    : transfer.exportTmx(file.toPath());
+	} finally {
+	    cache.closeConnection();
+	}
+    }
+
+    /*
+     * Replaces the translation mode, resetting the previous one (i.e. so that
+     * its connections to the cache are closed).
+     */
+    private void setTranslator(TranslationMode translator) {
+	if (this.translator != null && this.translator != translator) {
+	    this.translator.reset();
+	}
+	this.translator = translator;
+    }
+
+    private boolean isTsv(File file) {
+	return file.getName().toLowerCase().endsWith(".tsv");
     }
 
     /**
@@ -31,10 +31,61 @@ public interface ApiRequestBuilder {
     public List<ChatMessage> buildRequests(Properties properties,
 	    String sourceLang, String targetLang);
 
+    /**
+     * Builds a set of translation requests which also include, as reference,
+     * past translations of similar texts. By default, references are ignored.
+     * 
+     * @param properties file containing localization properties for a program
+     * @param sourceLang source language the content to translate is in
+     * @param targetLang language to which user is translating
+     * @param references past translations of similar texts (original text ->
+     *                   translation)
+     * @return list of chat messages (role: user -> content: prompt of the
+     *         translation command)
+     */
+    public default List<ChatMessage> buildRequests(Properties properties,
+	    String sourceLang, String targetLang, Properties references) {
+	return buildRequests(properties, sourceLang, targetLang);
+    }
+
+    /**
+     * @return boolean true if answers are requested to be streamed (by
+     *         default, false)
+     */
+    public default boolean isStreaming() {
+	return false;
+    }
+
+    /**
+     * @return boolean true if answers are requested in JSON format (an array
+     *         of objects {"key": ..., "value": ...}) rather than as lines
+     *         key=value (by default, false)
+     */
+    public default boolean isJson() {
+	return false;
+    }
+
+    /**
+     * @return boolean true if the keys of the properties are replaced with
+     *         short positional ids in the requests (see KeyCodec), rather than
+     *         sent in full (by default, false)
+     */
+    public default boolean isCompactKeys() {
+	return false;
+    }
+
     public String getModel();
 
     public int getMaxTokens();
 
     public double getTemperature();
 
+    /**
+     * @return max. number of requests to send at the same time (by default,
+     *         1)
+     */
+    public default int getParallelism() {
+	return 1;
+    }
+
 }
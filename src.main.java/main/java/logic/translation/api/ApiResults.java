@@ -0,0 +1,54 @@
+package main.java.logic.translation.api;
+
+import java.util.Collections;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Result of translating a set of properties via an API: their translations,
+ * and which of them were received from requests made by others (and thus, are
+ * already stored by them).
+ * 
+ * Each translation gets its own result, so that several of them can be
+ * carried out at the same time.
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public class ApiResults {
+
+    private final Properties translated;
+    private final Set<String> shared;
+
+    /**
+     * @param translated translations received from the API
+     */
+    public ApiResults(Properties translated) {
+	this(translated, Collections.emptySet());
+    }
+
+    /**
+     * @param translated translations received from the API
+     * @param shared     keys of those received from requests made by others
+     */
+    public ApiResults(Properties translated, Set<String> shared) {
+	this.translated = translated;
+	this.shared = shared;
+    }
+
+    /**
+     * @return translations received from the API (in the target language)
+     */
+    public Properties getTranslated() {
+	return translated;
+    }
+
+    /**
+     * @return keys of the translations received from requests made by others,
+     *         and thus already stored by them
+     */
+    public Set<String> getShared() {
+	return shared;
+    }
+
+}
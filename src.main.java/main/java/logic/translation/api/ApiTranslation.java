@@ -1,40 +1,192 @@
 package main.java.logic.translation.api;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import main.java.util.exception.TranslationException;
 
 /**
  * Interface for API access aimed at automatic translation.
  * 
+ * Translations are asynchronous: each of them is carried out in the
+ * background, and its results are given by a future. Implementations keep no
+ * state of any translation, so that several of them can be carried out at the
+ * same time (and composed with other tasks).
+ * 
  * @author Adriana R.F. (uo282798@uniovi.es)
  * @version April 2024
  */
 public interface ApiTranslation {
 
     /**
-     * Translates a given prompt (containing localization texts that the user
-     * has given as input) into a specific language also specified in the prompt
-     * via a set of requests to the API.
+     * Translates a given set of properties into a specific language via a set
+     * of requests to the API, taking into account past translations of
+     * similar texts (so that translations are consistent with them).
      * 
      * @param properties Properties object containing i18n localization settings
      *                   with texts in a given language
      * @param sourceLang i.e. "Palestinian (Palestine)"
      * @param targetLang i.e. "German (Germany)"
-     * @return translated texts as a string
+     * @param references past translations of similar texts (original text ->
+     *                   translation), null if none
+     * @param listener   listener of the translations, notified of each of them
+     *                   as soon as it is received (null for none)
+     * @return future of the properties translated onto the target language;
+     *         completed exceptionally with a TranslationException in case of
+     *         issue with API access and request
+     */
+    public CompletableFuture<ApiResults> translateAsync(Properties properties,
+	    String sourceLang, String targetLang, Properties references,
+	    TranslationListener listener);
+
+    /**
+     * Translates a given set of properties into several languages. If the API
+     * is multi-language, it is done at once (so that the original texts are
+     * only sent once); otherwise, by default, it is translated into each
+     * language at the same time.
      * 
+     * @param properties  Properties object containing i18n localization
+     *                    settings with texts in a given language
+     * @param sourceLang  i.e. "Palestinian (Palestine)"
+     * @param targetLangs i.e. "German (Germany)", "French"
+     * @param references  past translations of similar texts, per target
+     *                    language (original text -> translation)
+     * @param listener    listener of the translations, notified of each of
+     *                    them as soon as it is received (null for none)
+     * @return future of the properties translated onto each of the target
+     *         languages; completed exceptionally with a TranslationException
+     *         in case of issue with API access and request
+     */
+    public default CompletableFuture<Map<String, Properties>> translateAsync(
+	    Properties properties, String sourceLang, List<String> targetLangs,
+	    Map<String, Properties> references, TranslationListener listener) {
+	Map<String, CompletableFuture<ApiResults>> futures = new LinkedHashMap<>();
+	for (String targetLang : targetLangs) {
+	    futures.put(targetLang, translateAsync(properties, sourceLang,
+		    targetLang,
+		    references == null ? null : references.get(targetLang),
+		    listener));
+	}
+	return CompletableFuture
+		.allOf(futures.values().toArray(new CompletableFuture<?>[0]))
+		.thenApply(v -> {
+		    Map<String, Properties> results = new LinkedHashMap<>();
+		    for (Map.Entry<String, CompletableFuture<ApiResults>> e : futures
+			    .entrySet()) {
+			Properties translated = new Properties();
+			translated.putAll(e.getValue().join().getTranslated());
+			results.put(e.getKey(), translated);
+		    }
+		    return results;
+		});
+    }
+
+    /**
+     * Translates a given set of properties into a specific language, and
+     * waits for the result.
+     * 
+     * @param properties Properties object containing i18n localization settings
+     *                   with texts in a given language
+     * @param sourceLang i.e. "Palestinian (Palestine)"
+     * @param targetLang i.e. "German (Germany)"
      * @return properties object with the parameter properties translated onto
      *         the target language
-     * @throws Exception in case of issue with API access and request
+     * @throws TranslationException in case of issue with API access and
+     *                              request
      */
-    public Properties translate(Properties properties, String sourceLang,
-	    String targetLang) throws TranslationException;
+    public default Properties translate(Properties properties,
+	    String sourceLang, String targetLang) throws TranslationException {
+	return translate(properties, sourceLang, targetLang, null);
+    }
 
     /**
-     * Retrieves the translation results returned by the API.
+     * Translates a given set of properties into a specific language, taking
+     * into account past translations of similar texts, and waits for the
+     * result.
      * 
-     * @return properties object containing translations computed and retrieved
-     *         from the API
+     * @param properties Properties object containing i18n localization settings
+     *                   with texts in a given language
+     * @param sourceLang i.e. "Palestinian (Palestine)"
+     * @param targetLang i.e. "German (Germany)"
+     * @param references past translations of similar texts (original text ->
+     *                   translation)
+     * @return properties object with the parameter properties translated onto
+     *         the target language
+     * @throws TranslationException in case of issue with API access and
+     *                              request
+     */
+    public default Properties translate(Properties properties,
+	    String sourceLang, String targetLang, Properties references)
+	    throws TranslationException {
+	return await(translateAsync(properties, sourceLang, targetLang,
+		references, null)).getTranslated();
+    }
+
+    /**
+     * Translates a given set of properties into several languages, and waits
+     * for the result.
+     * 
+     * @param properties  Properties object containing i18n localization
+     *                    settings with texts in a given language
+     * @param sourceLang  i.e. "Palestinian (Palestine)"
+     * @param targetLangs i.e. "German (Germany)", "French"
+     * @param references  past translations of similar texts, per target
+     *                    language (original text -> translation)
+     * @return properties translated onto each of the target languages
+     * @throws TranslationException in case of issue with API access and
+     *                              request
+     */
+    public default Map<String, Properties> translate(Properties properties,
+	    String sourceLang, List<String> targetLangs,
+	    Map<String, Properties> references) throws TranslationException {
+	return await(translateAsync(properties, sourceLang, targetLangs,
+		references, null));
+    }
+
+    /**
+     * @return boolean true if a set of properties can be translated into
+     *         several languages at once (by default, false)
      */
-    public Properties getResults();
+    public default boolean isMultiLanguage() {
+	return false;
+    }
+
+    /**
+     * @return boolean true if translations are received (and notified to the
+     *         listener) as soon as each of them is ready, rather than once all
+     *         of them are (by default, false)
+     */
+    public default boolean isStreaming() {
+	return false;
+    }
+
+    /**
+     * Waits for the result of a translation.
+     * 
+     * @param future of the translation
+     * @return its result
+     * @throws TranslationException if the translation failed, or if
+     *                              interrupted while waiting for it
+     */
+    public static <T> T await(CompletableFuture<T> future)
+	    throws TranslationException {
+	try {
+	    return future.get();
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new TranslationException();
+	} catch (ExecutionException e) {
+	    if (e.getCause() instanceof TranslationException) {
+		throw (TranslationException) e.getCause();
+	    }
+	    TranslationException te = new TranslationException();
+	    te.initCause(e.getCause());
+	    throw te;
+	}
+    }
+
 }
@@ -0,0 +1,239 @@
+package main.java.logic.translation.api;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * Hedges slow calls (i.e. requests to the API): if a call has not answered
+ * after a given percentile of the latencies of the last calls (i.e. 95th), a
+ * duplicate of it is made, and whichever answers first is taken (the other
+ * one is cancelled). So that the slowest calls do not delay the whole set of
+ * them.
+ * 
+ * Duplicates are limited to a budget (a ratio of all the calls made), and are
+ * not made until there are enough latencies to know which calls are slow.
+ * 
+ * There is a single policy per API, shared by all of its callers. All of its
+ * operations are thread-safe.
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public class HedgingPolicy {
+
+    private final static Map<String, HedgingPolicy> policies = new HashMap<>();
+    private final static int WINDOW = 100;
+    private final static int MIN_SAMPLES = 10;
+
+    // Threads of both the calls and their duplicates
+    private final static ExecutorService executor = Executors
+	    .newCachedThreadPool(r -> {
+		Thread t = new Thread(r, "hedged-call");
+		t.setDaemon(true);
+		return t;
+	    });
+
+    // Percentile (0-100) after which a call is hedged (not if not positive),
+    // and max. ratio of duplicates to calls
+    private volatile double percentile;
+    private volatile double budget;
+
+    // Latencies (ms) of the last calls
+    private final long[] latencies = new long[WINDOW];
+    private int samples = 0;
+    private int next = 0;
+
+    // Statistics
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong wins = new AtomicLong();
+
+    /**
+     * Retrieves the policy of an API, creating it if it did not exist, and
+     * updates its settings.
+     * 
+     * @param api        name of the API
+     * @param percentile percentile (0-100) of the latencies after which a call
+     *                   is hedged (not hedged if not positive)
+     * @param budget     max. ratio of duplicates to calls (i.e. 0.1)
+     * @return policy of the API
+     */
+    public static synchronized HedgingPolicy get(String api,
+	    double percentile, double budget) {
+	HedgingPolicy policy = policies.get(api);
+	if (policy == null) {
+	    policy = new HedgingPolicy(percentile, budget);
+	    policies.put(api, policy);
+	} else {
+	    policy.percentile = percentile;
+	    policy.budget = budget;
+	}
+	return policy;
+    }
+
+    /**
+     * @param percentile percentile (0-100) of the latencies after which a call
+     *                   is hedged (not hedged if not positive)
+     * @param budget     max. ratio of duplicates to calls (i.e. 0.1)
+     */
+    public HedgingPolicy(double percentile, double budget) {
+	this.percentile = percentile;
+	this.budget = budget;
+    }
+
+    /**
+     * @return whether calls are hedged
+     */
+    public boolean isEnabled() {
+	return percentile > 0 && budget > 0;
+    }
+
+    /**
+     * Makes a call, hedging it if it is slow.
+     * 
+     * @param attempts attempts of the call: the first one (0), and its
+     *                 duplicate (1), if made
+     * @return result of the attempt that answered first
+     * @throws Exception failure of the call, if all of its attempts failed
+     */
+    public <T> T call(IntFunction<Callable<T>> attempts) throws Exception {
+	calls.incrementAndGet();
+	long delay = getDelay();
+	if (delay < 0) {
+	    return timed(attempts.apply(0)).call();
+	}
+
+	CompletionService<T> completion = new ExecutorCompletionService<>(
+		executor);
+	List<Future<T>> futures = new ArrayList<>();
+	futures.add(completion.submit(timed(attempts.apply(0))));
+	try {
+	    Future<T> done = completion.poll(delay, TimeUnit.MILLISECONDS);
+	    if (done == null) {
+		if (tryHedge()) {
+		    futures.add(completion.submit(timed(attempts.apply(1))));
+		}
+		done = completion.take();
+	    }
+
+	    // Whichever answers first (or the other one, if it failed)
+	    for (int pending = futures.size() - 1;; pending--) {
+		try {
+		    T result = done.get();
+		    if (done != futures.get(0)) {
+			wins.incrementAndGet();
+		    }
+		    return result;
+		} catch (ExecutionException e) {
+		    if (pending == 0) {
+			throw getCause(e);
+		    }
+		    done = completion.take();
+		}
+	    }
+	} finally {
+	    for (Future<T> f : futures) {
+		f.cancel(true);
+	    }
+	}
+    }
+
+    /**
+     * @return time (ms) after which a call is hedged: the percentile of the
+     *         latencies of the last calls (negative if not hedged)
+     */
+    public long getDelay() {
+	if (!isEnabled()) {
+	    return -1;
+	}
+	long[] sorted;
+	synchronized (latencies) {
+	    if (samples < MIN_SAMPLES) {
+		return -1;
+	    }
+	    sorted = Arrays.copyOf(latencies, samples);
+	}
+	Arrays.sort(sorted);
+	int i = (int) Math.ceil(Math.min(100, percentile) / 100 * sorted.length)
+		- 1;
+	return sorted[Math.max(0, i)];
+    }
+
+    /**
+     * @return number of calls made
+     */
+    public long getCalls() {
+	return calls.get();
+    }
+
+    /**
+     * @return number of duplicates made
+     */
+    public long getHedges() {
+	return hedges.get();
+    }
+
+    /**
+     * @return number of duplicates that answered before their calls
+     */
+    public long getWins() {
+	return wins.get();
+    }
+
+    /*
+     * ######################## AUXILIARY METHODS ##############################
+     */
+
+    /*
+     * Attempt that records its latency, if it succeeds.
+     */
+    private <T> Callable<T> timed(Callable<T> attempt) {
+	return () -> {
+	    long start = System.currentTimeMillis();
+	    T result = attempt.call();
+	    record(System.currentTimeMillis() - start);
+	    return result;
+	};
+    }
+
+    private void record(long latency) {
+	synchronized (latencies) {
+	    latencies[next] = latency;
+	    next = (next + 1) % WINDOW;
+	    samples = Math.min(WINDOW, samples + 1);
+	}
+    }
+
+    /*
+     * Takes a duplicate from the budget, if there is any left.
+     */
+    private synchronized boolean tryHedge() {
+	if (hedges.get() + 1 > budget * calls.get()) {
+	    return false;
+	}
+	hedges.incrementAndGet();
+	return true;
+    }
+
+    private static Exception getCause(ExecutionException e) {
+	Throwable cause = e.getCause();
+	if (cause instanceof Error) {
+	    throw (Error) cause;
+	}
+	return cause instanceof Exception ? (Exception) cause : e;
+    }
+
+}
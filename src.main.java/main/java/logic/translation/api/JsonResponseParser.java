@@ -0,0 +1,183 @@
+package main.java.logic.translation.api;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+
+/**
+ * Parses an answer of the API in JSON format as it is received, in fragments:
+ * an array of objects {"key": ..., "value": ...} (and "language", if the
+ * answer is into several languages). Each object is published to a listener
+ * as soon as it is complete, without keeping the whole answer.
+ * 
+ * Any text before the array (i.e. a code block) or after it is ignored. Only
+ * objects of requested keys, whose value is a text, are published; if the
+ * answer is not well-formed, its parsing stops.
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public class JsonResponseParser implements ResponseParser {
+
+    private final static JsonFactory FACTORY = new JsonFactory();
+
+    private final List<String> languages;
+    private final Set<String> keys;
+    private final TranslationListener listener;
+
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+    private boolean started = false;
+    private boolean done = false;
+    private int parsed = 0;
+
+    // Current object
+    private int depth = 0;
+    private String field;
+    private String key;
+    private String value;
+    private String language;
+
+    /**
+     * @param languages target languages of the answer (the first one, by
+     *                  default, if objects do not state it)
+     * @param keys      requested keys (null for any)
+     * @param listener  listener of the parsed objects
+     */
+    public JsonResponseParser(List<String> languages, Set<String> keys,
+	    TranslationListener listener) {
+	this.languages = languages;
+	this.keys = keys;
+	this.listener = listener;
+	try {
+	    this.parser = FACTORY.createNonBlockingByteArrayParser();
+	} catch (IOException e) {
+	    throw new IllegalStateException(e);
+	}
+	this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    @Override
+    public void append(String fragment) {
+	if (done) {
+	    return;
+	}
+	if (!started) {
+	    int start = fragment.indexOf('[');
+	    if (start < 0) {
+		return;
+	    }
+	    fragment = fragment.substring(start);
+	    started = true;
+	}
+
+	byte[] bytes = fragment.getBytes(StandardCharsets.UTF_8);
+	try {
+	    feeder.feedInput(bytes, 0, bytes.length);
+	    parse();
+	} catch (IOException e) {
+	    done = true; // Not well-formed
+	}
+    }
+
+    @Override
+    public void flush() {
+	if (!done && started) {
+	    feeder.endOfInput();
+	    try {
+		parse();
+	    } catch (IOException e) {
+		// Incomplete
+	    }
+	}
+	done = true;
+    }
+
+    @Override
+    public int getParsed() {
+	return parsed;
+    }
+
+    /*
+     * ######################## AUXILIARY METHODS ##############################
+     */
+
+    /*
+     * Parses all the tokens available so far.
+     */
+    private void parse() throws IOException {
+	JsonToken token;
+	while (!done && (token = parser.nextToken()) != null
+		&& token != JsonToken.NOT_AVAILABLE) {
+	    switch (token) {
+	    case START_ARRAY:
+	    case START_OBJECT:
+		if (++depth == 2) {
+		    key = value = language = null;
+		}
+		break;
+	    case END_ARRAY:
+	    case END_OBJECT:
+		if (--depth == 1) {
+		    publish();
+		} else if (depth == 0) {
+		    done = true; // End of the array
+		}
+		break;
+	    case FIELD_NAME:
+		field = parser.getCurrentName();
+		break;
+	    default:
+		if (depth == 2 && token.isScalarValue()) {
+		    set(field, token == JsonToken.VALUE_STRING
+			    ? parser.getText()
+			    : null);
+		}
+	    }
+	}
+    }
+
+    private void set(String field, String text) {
+	if ("key".equals(field)) {
+	    key = text;
+	} else if ("value".equals(field)) {
+	    value = text;
+	} else if ("language".equals(field)) {
+	    language = text;
+	}
+    }
+
+    /*
+     * Publishes the current object, if valid.
+     */
+    private void publish() {
+	String target = getLanguage();
+	if (key != null && value != null && target != null
+		&& (keys == null || keys.contains(key))) {
+	    parsed++;
+	    listener.translated(target, key, value);
+	}
+    }
+
+    /*
+     * Target language of the current object (null if unknown).
+     */
+    private String getLanguage() {
+	if (language == null) {
+	    return languages.get(0);
+	}
+	for (String l : languages) {
+	    if (l.equalsIgnoreCase(language.trim())) {
+		return l;
+	    }
+	}
+	return null;
+    }
+
+}
@@ -0,0 +1,107 @@
+package main.java.logic.translation.api;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Replaces the keys of the properties to translate with short positional ids
+ * (1, 2, 3...), so that their full names (i.e.
+ * gui.cards.app.settings.dialog.button.cancel.tooltip) are neither sent to
+ * the API nor echoed back in its answers; and maps the ids of the answers
+ * back to their keys.
+ * 
+ * Ids are assigned in the order of the keys, so that they are the same
+ * whenever the same keys are translated (i.e. follow-up requests of some of
+ * them). A codec can also leave keys as they are (identity).
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public class KeyCodec {
+
+    private final boolean compact;
+    private final Map<String, String> ids = new HashMap<>();
+    private final Map<String, String> keys = new HashMap<>();
+
+    /**
+     * Codec that leaves keys as they are.
+     */
+    public KeyCodec() {
+	this.compact = false;
+    }
+
+    /**
+     * @param keys keys to replace with positional ids
+     */
+    public KeyCodec(Collection<String> keys) {
+	this.compact = true;
+	List<String> sorted = new ArrayList<>(keys);
+	Collections.sort(sorted);
+	for (String key : sorted) {
+	    String id = String.valueOf(ids.size() + 1);
+	    this.ids.put(key, id);
+	    this.keys.put(id, key);
+	}
+    }
+
+    /**
+     * @return whether keys are replaced with ids
+     */
+    public boolean isCompact() {
+	return compact;
+    }
+
+    /**
+     * @param key of a property
+     * @return its id (the key itself, if unknown or not compact)
+     */
+    public String encode(String key) {
+	return compact ? ids.getOrDefault(key, key) : key;
+    }
+
+    /**
+     * @param id of a property, as answered by the API
+     * @return its key (null if unknown)
+     */
+    public String decode(String id) {
+	if (!compact) {
+	    return id;
+	}
+	return id == null ? null : keys.get(id.trim());
+    }
+
+    /**
+     * @param properties properties to translate
+     * @return the same properties, by their ids
+     */
+    public Properties encode(Properties properties) {
+	if (!compact) {
+	    return properties;
+	}
+	Properties encoded = new Properties();
+	for (String key : properties.stringPropertyNames()) {
+	    encoded.put(encode(key), properties.getProperty(key));
+	}
+	return encoded;
+    }
+
+    /**
+     * @param keys of properties
+     * @return their ids
+     */
+    public Set<String> encode(Collection<String> keys) {
+	Set<String> encoded = new HashSet<>();
+	for (String key : keys) {
+	    encoded.add(encode(key));
+	}
+	return encoded;
+    }
+
+}
@@ -0,0 +1,43 @@
+package main.java.logic.translation.api;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import com.theokanning.openai.completion.chat.ChatMessage;
+
+/**
+ * Builder of translation requests that can also ask for translations into
+ * several languages at once, with the same requests. Callers must check that
+ * a builder implements it (and has it enabled) before doing so.
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public interface MultiLanguageRequestBuilder extends ApiRequestBuilder {
+
+    /**
+     * @return boolean true if requests into several languages at once are
+     *         enabled
+     */
+    public boolean isMultiLanguage();
+
+    /**
+     * Builds a set of translation requests into several languages at once:
+     * the answer to each of them has a section per language, which starts with
+     * a line "### language".
+     * 
+     * @param properties  file containing localization properties for a
+     *                    program
+     * @param sourceLang  source language the content to translate is in
+     * @param targetLangs languages to which user is translating
+     * @param references  past translations of similar texts, per target
+     *                    language (original text -> translation)
+     * @return list of chat messages (role: user -> content: prompt of the
+     *         translation command)
+     */
+    public List<ChatMessage> buildRequests(Properties properties,
+	    String sourceLang, List<String> targetLangs,
+	    Map<String, Properties> references);
+
+}
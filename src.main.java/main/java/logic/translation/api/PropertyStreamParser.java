@@ -0,0 +1,113 @@
+package main.java.logic.translation.api;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Parses an answer of the API (lines with format key=value) as it is
+ * received, in fragments: each line is published to a listener as soon as it
+ * is complete, rather than once the whole answer has arrived.
+ * 
+ * Answers into several languages have a section per language, which starts
+ * with a line "### language": each line is published in the language of its
+ * section (lines of unknown languages are ignored). Answers into a single
+ * language have no sections: any such line is skipped, and the rest of them
+ * are still published in that language.
+ * 
+ * Only the lines of requested keys are published (list markers, i.e. "- ",
+ * are left out).
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public class PropertyStreamParser implements ResponseParser {
+
+    private final static String SECTION = "###";
+
+    private final List<String> languages;
+    private final Set<String> keys;
+    private final TranslationListener listener;
+
+    private final StringBuilder line = new StringBuilder();
+    private String language;
+    private int parsed = 0;
+
+    /**
+     * @param languages target languages of the answer (the first one, by
+     *                  default, until a section starts)
+     * @param keys      requested keys (null for any)
+     * @param listener  listener of the parsed lines
+     */
+    public PropertyStreamParser(List<String> languages, Set<String> keys,
+	    TranslationListener listener) {
+	this.languages = languages;
+	this.keys = keys;
+	this.listener = listener;
+	this.language = languages.size() == 1 ? languages.get(0) : null;
+    }
+
+    @Override
+    public void append(String fragment) {
+	for (int i = 0; i < fragment.length(); i++) {
+	    char c = fragment.charAt(i);
+	    if (c == '\n') {
+		parse(line.toString());
+		line.setLength(0);
+	    } else {
+		line.append(c);
+	    }
+	}
+    }
+
+    @Override
+    public void flush() {
+	parse(line.toString());
+	line.setLength(0);
+    }
+
+    @Override
+    public int getParsed() {
+	return parsed;
+    }
+
+    /*
+     * Publishes a complete line, or starts a language section (only if
+     * several languages were requested).
+     */
+    private void parse(String text) {
+	String trimmed = text.trim();
+	if (trimmed.startsWith("- ")) {
+	    trimmed = trimmed.substring(2);
+	}
+	if (trimmed.startsWith(SECTION)) {
+	    if (languages.size() > 1) {
+		language = getLanguage(trimmed);
+	    }
+	    return;
+	}
+
+	int equals = trimmed.indexOf('=');
+	if (language == null || equals <= 0) {
+	    return;
+	}
+	String key = trimmed.substring(0, equals).trim();
+	if (keys == null || keys.contains(key)) {
+	    parsed++;
+	    listener.translated(language, key, trimmed.substring(equals + 1));
+	}
+    }
+
+    /*
+     * Target language of a section header (null if unknown).
+     */
+    private String getLanguage(String header) {
+	String name = header.replace("#", "").replace(":", "").trim();
+	for (String l : languages) {
+	    if (l.equalsIgnoreCase(name)) {
+		return l;
+	    }
+	}
+	return null;
+    }
+
+}
@@ -0,0 +1,181 @@
+package main.java.logic.translation.api;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+import main.java.logic.translation.api.RetryPolicy.Sleeper;
+
+/**
+ * Paces the requests to an API so that they do not exceed its budgets of
+ * requests and tokens per minute: each budget is a bucket that refills
+ * continuously (at a rate of a whole budget per minute), and each request
+ * takes 1 request and its tokens from them. A budget which is not positive
+ * is not limited: its bucket is left out (neither waited for nor charged).
+ * 
+ * Requests wait (rather than fail) until there is enough budget for them, in
+ * the same order they arrived. A request larger than the whole budget of
+ * tokens waits until the bucket is full, and then leaves it in debt.
+ * 
+ * There is a single limiter per API, shared by all of its callers. All of its
+ * operations are thread-safe.
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public class RateLimiter {
+
+    private final static Map<String, RateLimiter> limiters = new HashMap<>();
+    private final static long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    // Budgets per minute (not limited if not positive)
+    private volatile long requestsPerMinute;
+    private volatile long tokensPerMinute;
+
+    // Available budgets
+    private double requests;
+    private double tokens;
+    private long refilled;
+
+    private final LongSupplier clock;
+    private final Sleeper sleeper;
+    private final ReentrantLock lock = new ReentrantLock(true); // FIFO
+
+    // Statistics
+    private final AtomicLong waits = new AtomicLong();
+    private final AtomicLong waitTime = new AtomicLong();
+
+    /**
+     * Retrieves the limiter of an API, creating it if it did not exist, and
+     * updates its budgets.
+     * 
+     * @param api               name of the API
+     * @param requestsPerMinute max. number of requests per minute
+     * @param tokensPerMinute   max. number of tokens per minute
+     * @return limiter of the API
+     */
+    public static synchronized RateLimiter get(String api,
+	    long requestsPerMinute, long tokensPerMinute) {
+	RateLimiter limiter = limiters.get(api);
+	if (limiter == null) {
+	    limiter = new RateLimiter(requestsPerMinute, tokensPerMinute,
+		    System::currentTimeMillis, Thread::sleep);
+	    limiters.put(api, limiter);
+	} else {
+	    limiter.requestsPerMinute = requestsPerMinute;
+	    limiter.tokensPerMinute = tokensPerMinute;
+	}
+	return limiter;
+    }
+
+    /**
+     * @param requestsPerMinute max. number of requests per minute
+     * @param tokensPerMinute   max. number of tokens per minute
+     * @param clock             current time (ms)
+     * @param sleeper           waits for a given time (ms)
+     */
+    public RateLimiter(long requestsPerMinute, long tokensPerMinute,
+	    LongSupplier clock, Sleeper sleeper) {
+	this.requestsPerMinute = requestsPerMinute;
+	this.tokensPerMinute = tokensPerMinute;
+	this.requests = requestsPerMinute;
+	this.tokens = tokensPerMinute;
+	this.clock = clock;
+	this.sleeper = sleeper;
+	this.refilled = clock.getAsLong();
+    }
+
+    /**
+     * Waits until there is enough budget for a request, and takes it.
+     * 
+     * @param requestTokens tokens of the request
+     * @return time (ms) waited
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public long acquire(long requestTokens) throws InterruptedException {
+	long start = clock.getAsLong();
+	lock.lockInterruptibly();
+	try {
+	    for (;;) {
+		refill();
+		long delay = getDelay(requestTokens);
+		if (delay <= 0) {
+		    break;
+		}
+		sleeper.sleep(delay);
+	    }
+	    if (requestsPerMinute > 0) {
+		requests--;
+	    }
+	    if (tokensPerMinute > 0) {
+		tokens -= requestTokens;
+	    }
+	} finally {
+	    lock.unlock();
+	}
+
+	long waited = clock.getAsLong() - start;
+	if (waited > 0) {
+	    waits.incrementAndGet();
+	    waitTime.addAndGet(waited);
+	}
+	return waited;
+    }
+
+    /**
+     * @return number of requests that had to wait for budget
+     */
+    public long getWaits() {
+	return waits.get();
+    }
+
+    /**
+     * @return total time (ms) requests waited for budget
+     */
+    public long getWaitTime() {
+	return waitTime.get();
+    }
+
+    /*
+     * ######################## AUXILIARY METHODS ##############################
+     */
+
+    /*
+     * Refills the buckets with the budget accrued since the last time (up to
+     * the whole budget per minute).
+     */
+    private void refill() {
+	long now = clock.getAsLong();
+	long elapsed = now - refilled;
+	refilled = now;
+	requests = Math.min(requestsPerMinute,
+		requests + (double) elapsed * requestsPerMinute / MINUTE);
+	tokens = Math.min(tokensPerMinute,
+		tokens + (double) elapsed * tokensPerMinute / MINUTE);
+    }
+
+    /*
+     * Time (ms) to wait until there is enough budget for a request (0 if there
+     * already is).
+     */
+    private long getDelay(long requestTokens) {
+	long delay = 0;
+	if (requestsPerMinute > 0 && requests < 1) {
+	    delay = timeToRefill(1 - requests, requestsPerMinute);
+	}
+	long needed = Math.min(requestTokens, tokensPerMinute);
+	if (tokensPerMinute > 0 && tokens < needed) {
+	    delay = Math.max(delay,
+		    timeToRefill(needed - tokens, tokensPerMinute));
+	}
+	return delay;
+    }
+
+    private static long timeToRefill(double missing, long perMinute) {
+	return Math.max(1, (long) Math.ceil(missing * MINUTE / perMinute));
+    }
+
+}
@@ -0,0 +1,27 @@
+package main.java.logic.translation.api;
+
+/**
+ * Parses an answer of the API as it is received, in fragments, publishing
+ * each translation found in it to a listener as soon as it is complete.
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public interface ResponseParser {
+
+    /**
+     * @param fragment next fragment of the answer
+     */
+    void append(String fragment);
+
+    /**
+     * Parses the rest of the answer (once the whole of it has arrived).
+     */
+    void flush();
+
+    /**
+     * @return number of translations published so far
+     */
+    int getParsed();
+
+}
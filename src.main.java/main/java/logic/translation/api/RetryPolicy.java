@@ -0,0 +1,165 @@
+package main.java.logic.translation.api;
+
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * Retries a failed call (i.e. a request to the API) with exponential backoff:
+ * after each failure, it waits twice as long as the previous time (up to a
+ * max. delay), randomly shortened by up to a half (jitter), so that several
+ * calls failing at once are not retried at once as well.
+ * 
+ * If the failure states how long to wait (i.e. Retry-After header of a rate
+ * limit error), that time is waited instead. A call is given up on after a
+ * max. number of attempts, or if the next retry would exceed the max. time to
+ * spend on it. Some failures (i.e. reached quota) are not worth retrying.
+ * 
+ * Clock and sleeps can be replaced, so that retries can be simulated.
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public class RetryPolicy {
+
+    private final int maxAttempts;
+    private final long baseDelay;
+    private final long maxDelay;
+    private final long maxTime;
+
+    private Predicate<Exception> retryable = e -> true;
+    private ToLongFunction<Exception> retryAfter = e -> -1;
+
+    private final LongSupplier clock;
+    private final Sleeper sleeper;
+    private final Random random;
+
+    // Statistics
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong backoffTime = new AtomicLong();
+
+    /**
+     * @param maxAttempts max. number of attempts of a call (first one
+     *                    included)
+     * @param baseDelay   delay (ms) before the first retry
+     * @param maxDelay    max. delay (ms) before a retry
+     * @param maxTime     max. time (ms) to spend on a call, retries included
+     */
+    public RetryPolicy(int maxAttempts, long baseDelay, long maxDelay,
+	    long maxTime) {
+	this(maxAttempts, baseDelay, maxDelay, maxTime,
+		System::currentTimeMillis, Thread::sleep, null);
+    }
+
+    /**
+     * @param maxAttempts max. number of attempts of a call (first one
+     *                    included)
+     * @param baseDelay   delay (ms) before the first retry
+     * @param maxDelay    max. delay (ms) before a retry
+     * @param maxTime     max. time (ms) to spend on a call, retries included
+     * @param clock       current time (ms)
+     * @param sleeper     waits for a given time (ms)
+     * @param random      source of jitter (null for a thread-local one)
+     */
+    public RetryPolicy(int maxAttempts, long baseDelay, long maxDelay,
+	    long maxTime, LongSupplier clock, Sleeper sleeper, Random random) {
+	this.maxAttempts = Math.max(1, maxAttempts);
+	this.baseDelay = baseDelay;
+	this.maxDelay = maxDelay;
+	this.maxTime = maxTime;
+	this.clock = clock;
+	this.sleeper = sleeper;
+	this.random = random;
+    }
+
+    /**
+     * @param retryable whether a failure is worth retrying (by default, all of
+     *                  them are)
+     * @return this policy
+     */
+    public RetryPolicy retryIf(Predicate<Exception> retryable) {
+	this.retryable = retryable;
+	return this;
+    }
+
+    /**
+     * @param retryAfter time (ms) to wait stated by a failure (negative if
+     *                   none)
+     * @return this policy
+     */
+    public RetryPolicy retryAfter(ToLongFunction<Exception> retryAfter) {
+	this.retryAfter = retryAfter;
+	return this;
+    }
+
+    /**
+     * Makes a call, retrying it on failure.
+     * 
+     * @param call to make
+     * @return result of the call
+     * @throws Exception last failure of the call, if given up on
+     */
+    public <T> T call(Callable<T> call) throws Exception {
+	long start = clock.getAsLong();
+	for (int attempt = 1;; attempt++) {
+	    try {
+		return call.call();
+	    } catch (InterruptedException e) {
+		throw e;
+	    } catch (Exception e) {
+		if (attempt >= maxAttempts || !retryable.test(e)) {
+		    throw e;
+		}
+		long delay = getDelay(attempt, e);
+		if (clock.getAsLong() - start + delay > maxTime) {
+		    throw e;
+		}
+		retries.incrementAndGet();
+		backoffTime.addAndGet(delay);
+		sleeper.sleep(delay);
+	    }
+	}
+    }
+
+    /**
+     * @param attempt number of the failed attempt (from 1)
+     * @param e       failure of the attempt
+     * @return time (ms) to wait before the next attempt
+     */
+    public long getDelay(int attempt, Exception e) {
+	long stated = retryAfter.applyAsLong(e);
+	if (stated >= 0) {
+	    return stated;
+	}
+	long delay = Math.min(maxDelay,
+		baseDelay << Math.min(attempt - 1, 30));
+	Random r = random == null ? ThreadLocalRandom.current() : random;
+	return delay / 2 + (long) (r.nextDouble() * (delay - delay / 2));
+    }
+
+    /**
+     * @return number of retries made (of all calls)
+     */
+    public long getRetries() {
+	return retries.get();
+    }
+
+    /**
+     * @return total time (ms) spent waiting before retries (of all calls)
+     */
+    public long getBackoffTime() {
+	return backoffTime.get();
+    }
+
+    /**
+     * Waits for a given time.
+     */
+    public interface Sleeper {
+	void sleep(long millis) throws InterruptedException;
+    }
+
+}
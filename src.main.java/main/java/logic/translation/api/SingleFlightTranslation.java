@@ -0,0 +1,231 @@
+package main.java.logic.translation.api;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import main.java.util.resources.PropertyLoader;
+import main.java.util.resources.TextUtil;
+
+/**
+ * Access to an API which avoids requesting the same translation twice at the
+ * same time: i.e. when several files are translated at once, and they share
+ * some texts.
+ * 
+ * The first request of a (normalized) text from a language into another is
+ * sent to the API; those of the same text and languages made while it is in
+ * flight wait for its result rather than being sent as well. Results of the
+ * very same text are marked as shared, so that they are only stored once in
+ * the cache; those of texts which only differ in their white spaces or
+ * Unicode normalization are stored by each request under its own text, so
+ * that it is found in the cache next time. If the first request fails, they
+ * are sent then.
+ * 
+ * As texts are only coalesced into the same language, and those repeated in
+ * a file are already requested once (see Deduplicator), this only applies
+ * across translations carried out at the same time: i.e. several source
+ * files translated at once into the same languages. Requests into several
+ * languages at once are not coalesced.
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public class SingleFlightTranslation implements ApiTranslation {
+
+    private final static Logger LOGGER = Logger
+	    .getLogger(SingleFlightTranslation.class.getName());
+
+    // Translations in flight, shared by all requests: source language +
+    // target language + normalized text -> text requested, and its
+    // translation (null if not received)
+    private final static Map<String, Flight> inFlight = new ConcurrentHashMap<>();
+
+    // Statistics (of all requests)
+    private final static AtomicLong savedTexts = new AtomicLong();
+    private final static AtomicLong savedCalls = new AtomicLong();
+
+    private final ApiTranslation api;
+
+    /**
+     * @param api access to the API to send requests to
+     */
+    public SingleFlightTranslation(ApiTranslation api) {
+	this.api = api;
+    }
+
+    @Override
+    public CompletableFuture<ApiResults> translateAsync(Properties properties,
+	    String sourceLang, String targetLang, Properties references,
+	    TranslationListener listener) {
+
+	// Claim the texts not in flight, and wait for the rest
+	Properties own = new Properties();
+	Map<String, Flight> claimed = new LinkedHashMap<>();
+	Map<String, String> flights = new LinkedHashMap<>();
+	Map<String, Flight> waited = new LinkedHashMap<>();
+	for (String key : PropertyLoader.getKeys(properties)) {
+	    String text = properties.getProperty(key);
+	    String id = sourceLang + "\u0000" + targetLang + "\u0000"
+		    + TextUtil.normalize(text);
+	    Flight flight = new Flight(text);
+	    Flight previous = inFlight.putIfAbsent(id, flight);
+	    if (previous == null) {
+		own.put(key, text);
+		claimed.put(key, flight);
+		flights.put(key, id);
+	    } else {
+		waited.put(key, previous);
+	    }
+	}
+
+	CompletableFuture<Properties> sent;
+	if (!own.isEmpty()) {
+	    sent = send(own, sourceLang, targetLang, references, listener);
+	} else {
+	    savedCalls.incrementAndGet();
+	    sent = CompletableFuture.completedFuture(new Properties());
+	}
+	if (!waited.isEmpty()) {
+	    LOGGER.log(Level.INFO,
+		    "Single flight into {0}: {1} of {2} texts already in flight"
+			    + " ({3} texts and {4} calls saved so far)",
+		    new Object[] { targetLang, waited.size(), properties.size(),
+			    savedTexts.get(), savedCalls.get() });
+	}
+	// Results (or failure) are shared with those waiting for them
+	sent.whenComplete((translated, e) -> {
+	    for (Map.Entry<String, Flight> c : claimed.entrySet()) {
+		c.getValue().result.complete(translated == null ? null
+			: translated.getProperty(c.getKey()));
+		inFlight.remove(flights.get(c.getKey()), c.getValue());
+	    }
+	});
+
+	// Those waited for are published as soon as they are received
+	if (listener != null) {
+	    for (Map.Entry<String, Flight> w : waited.entrySet()) {
+		w.getValue().result.thenAccept(translation -> {
+		    if (translation != null) {
+			listener.translated(targetLang, w.getKey(), translation);
+		    }
+		});
+	    }
+	}
+
+	CompletableFuture<?>[] results = new CompletableFuture<?>[waited.size()];
+	int i = 0;
+	for (Flight w : waited.values()) {
+	    results[i++] = w.result;
+	}
+	CompletableFuture<Void> received = CompletableFuture.allOf(results);
+	return sent.thenCombine(received, (translated, v) -> translated)
+		.thenCompose(translated -> {
+		    Set<String> shared = new HashSet<>();
+		    Properties failed = new Properties();
+		    for (Map.Entry<String, Flight> w : waited.entrySet()) {
+			String translation = w.getValue().result.join();
+			if (translation != null) {
+			    translated.put(w.getKey(), translation);
+			    // Stored by the other request (under the same text)
+			    if (w.getValue().text
+				    .equals(properties.getProperty(w.getKey()))) {
+				shared.add(w.getKey());
+			    }
+			    savedTexts.incrementAndGet();
+			} else {
+			    failed.put(w.getKey(),
+				    properties.getProperty(w.getKey()));
+			}
+		    }
+		    if (failed.isEmpty()) {
+			return CompletableFuture.completedFuture(
+				new ApiResults(translated, shared));
+		    }
+		    // Texts whose request (by another) failed are sent again
+		    return send(failed, sourceLang, targetLang, references,
+			    listener).thenApply(resent -> {
+				translated.putAll(resent);
+				return new ApiResults(translated, shared);
+			    });
+		});
+    }
+
+    /**
+     * Requests into several languages at once are sent as they are.
+     */
+    @Override
+    public CompletableFuture<Map<String, Properties>> translateAsync(
+	    Properties properties, String sourceLang, List<String> targetLangs,
+	    Map<String, Properties> references, TranslationListener listener) {
+	if (!api.isMultiLanguage()) {
+	    return ApiTranslation.super.translateAsync(properties, sourceLang,
+		    targetLangs, references, listener);
+	}
+	return api.translateAsync(properties, sourceLang, targetLangs,
+		references, listener);
+    }
+
+    @Override
+    public boolean isMultiLanguage() {
+	return api.isMultiLanguage();
+    }
+
+    @Override
+    public boolean isStreaming() {
+	return api.isStreaming();
+    }
+
+    /**
+     * @return number of texts whose translation was not requested, as it was
+     *         already in flight
+     */
+    public static long getSavedTexts() {
+	return savedTexts.get();
+    }
+
+    /**
+     * @return number of calls to the API not made, as all of their texts were
+     *         already in flight
+     */
+    public static long getSavedCalls() {
+	return savedCalls.get();
+    }
+
+    /*
+     * ######################## AUXILIARY METHODS ##############################
+     */
+
+    private CompletableFuture<Properties> send(Properties properties,
+	    String sourceLang, String targetLang, Properties references,
+	    TranslationListener listener) {
+	return api.translateAsync(properties, sourceLang, targetLang,
+		references, listener).thenApply(results -> {
+		    Properties sent = new Properties();
+		    sent.putAll(results.getTranslated());
+		    return sent;
+		});
+    }
+
+    /*
+     * Text requested by the first request, and its translation.
+     */
+    private static class Flight {
+
+	private final String text;
+	private final CompletableFuture<String> result = new CompletableFuture<>();
+
+	private Flight(String text) {
+	    this.text = text;
+	}
+
+    }
+
+}
@@ -0,0 +1,22 @@
+package main.java.logic.translation.api;
+
+/**
+ * Listener of the translations returned by an API, as soon as each of them is
+ * received (i.e. while the answer is still being streamed).
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public interface TranslationListener {
+
+    /**
+     * Called when the translation of a property has been received. It may be
+     * called from several threads at once.
+     * 
+     * @param language    target language of the translation
+     * @param key         key of the property
+     * @param translation translated value of the property
+     */
+    void translated(String language, String key, String translation);
+
+}
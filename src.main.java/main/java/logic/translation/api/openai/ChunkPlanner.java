@@ -0,0 +1,80 @@
+package main.java.logic.translation.api.openai;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Packs the lines (key=value) to translate into as few requests as possible,
+ * so that none of them exceeds the token limits of the model:
+ * 
+ * - The prompt (command and lines) and its answer must fit in the context
+ * window of the model (token limit per request).
+ * 
+ * - The answer, expected to be as long as the lines times the output ratio,
+ * must fit in the max. number of tokens to generate.
+ * 
+ * Lines are never split: a line too long to fit in any request is sent alone.
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public class ChunkPlanner {
+
+    private final int tokenLimit;
+    private final int maxTokens;
+    private final double outputRatio;
+
+    /**
+     * @param tokenLimit  max. number of tokens of a request and its answer
+     * @param maxTokens   max. number of tokens of an answer
+     * @param outputRatio expected number of tokens of the answer, per token of
+     *                    the lines sent
+     */
+    public ChunkPlanner(int tokenLimit, int maxTokens, double outputRatio) {
+	this.tokenLimit = tokenLimit;
+	this.maxTokens = maxTokens;
+	this.outputRatio = outputRatio;
+    }
+
+    /**
+     * @param command header of all requests (i.e. translation command)
+     * @return max. number of tokens of the lines of a single request
+     */
+    public int getBudget(String command) {
+	int input = tokenLimit - maxTokens - TokenCounter.count(command);
+	int output = (int) (maxTokens / outputRatio);
+	return Math.max(1, Math.min(input, output));
+    }
+
+    /**
+     * Splits a set of lines into consecutive chunks, each of them to be sent
+     * in a request, keeping their order.
+     * 
+     * @param command header of all requests (i.e. translation command)
+     * @param lines   lines to send
+     * @return chunks of lines
+     */
+    public List<List<String>> plan(String command, List<String> lines) {
+	int budget = getBudget(command);
+	List<List<String>> chunks = new ArrayList<>();
+	List<String> chunk = new ArrayList<>();
+	int tokens = 0;
+
+	for (String line : lines) {
+	    int lineTokens = TokenCounter.count(line) + 1; // Line break
+	    if (!chunk.isEmpty() && tokens + lineTokens > budget) {
+		chunks.add(chunk);
+		chunk = new ArrayList<>();
+		tokens = 0;
+	    }
+	    chunk.add(line);
+	    tokens += lineTokens;
+	}
+
+	if (!chunk.isEmpty()) {
+	    chunks.add(chunk);
+	}
+	return chunks;
+    }
+
+}
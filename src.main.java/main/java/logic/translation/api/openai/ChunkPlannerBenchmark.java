@@ -0,0 +1,134 @@
+package main.java.logic.translation.api.openai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark of the planning of requests (see ChunkPlanner): packs a large
+ * bundle (100k entries by default) into chunks, with the token limits of the
+ * model in api.properties, and reports how long counting its tokens and
+ * planning its chunks take, how many chunks it is split into, and whether any
+ * of them exceeds its budget.
+ * 
+ * Tokens are counted with the BPE encoding of the model (see TokenCounter);
+ * they are also estimated without it, so that both can be compared. Texts
+ * are of varied lengths and scripts (English, accented, Cyrillic and CJK
+ * ones), with placeholders and punctuation.
+ * 
+ * Usage: ChunkPlannerBenchmark [entries] [runs], i.e. ChunkPlannerBenchmark
+ * 100000 5
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public class ChunkPlannerBenchmark {
+
+    private final static long SEED = 42;
+    private final static String COMMAND = "Translate all property values from English to Spanish.\n"
+	    + "Answer only with the translated properties, one per line, with the same ids:\n";
+
+    public static void main(String[] args) throws Exception {
+	int entries = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+	int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+	List<String> lines = getLines(entries);
+	ChunkPlanner planner = new OpenAIApiRequestBuilder().getPlanner(1);
+	int budget = planner.getBudget(COMMAND);
+	System.out.printf("%d entries, budget of %d tokens per request (%s)%n",
+		entries, budget,
+		TokenCounter.isExact() ? "exact counts" : "estimated counts");
+
+	// Warm up
+	planner.plan(COMMAND, lines);
+
+	long exact = 0, estimated = 0;
+	long countTime = 0, estimateTime = 0, planTime = 0;
+	List<List<String>> chunks = null;
+	for (int run = 0; run < runs; run++) {
+	    long start = System.nanoTime();
+	    exact = 0;
+	    for (String line : lines) {
+		exact += TokenCounter.count(line);
+	    }
+	    countTime += System.nanoTime() - start;
+
+	    start = System.nanoTime();
+	    estimated = 0;
+	    for (String line : lines) {
+		estimated += TokenCounter.estimate(line);
+	    }
+	    estimateTime += System.nanoTime() - start;
+
+	    start = System.nanoTime();
+	    chunks = planner.plan(COMMAND, lines);
+	    planTime += System.nanoTime() - start;
+	}
+
+	// Real size of each chunk, as sent
+	int largest = 0, over = 0;
+	for (List<String> chunk : chunks) {
+	    int tokens = 0;
+	    for (String line : chunk) {
+		tokens += TokenCounter.count(line) + 1;
+	    }
+	    largest = Math.max(largest, tokens);
+	    if (tokens > budget && chunk.size() > 1) {
+		over++;
+	    }
+	}
+
+	System.out.printf("%-22s %12s %12s%n", "", "tokens", "time(ms)");
+	System.out.printf("%-22s %12d %12.1f%n", "count (BPE)", exact,
+		countTime / 1e6 / runs);
+	System.out.printf("%-22s %12d %12.1f  (%+.1f%%)%n", "estimate", estimated,
+		estimateTime / 1e6 / runs, (estimated - exact) * 100.0 / exact);
+	System.out.printf("%-22s %12d %12.1f%n", "plan", chunks.size(),
+		planTime / 1e6 / runs);
+	System.out.printf(
+		"%d chunks, largest of %d tokens (budget %d), %d over budget%n",
+		chunks.size(), largest, budget, over);
+    }
+
+    /*
+     * ######################## AUXILIARY METHODS ##############################
+     */
+
+    /*
+     * Lines (id=value) of a bundle of a given number of texts, of varied
+     * lengths and scripts.
+     */
+    private static List<String> getLines(int entries) {
+	String[][] words = {
+		{ "file", "open", "save", "translation", "language", "window",
+			"settings", "error", "the", "is", "not", "available" },
+		{ "traducción", "configuración", "está", "ventana", "idioma",
+			"archivo", "guardar", "también", "menú", "opción" },
+		{ "файл", "открыть", "сохранить", "перевод", "язык", "окно",
+			"настройки", "ошибка" },
+		{ "ファイル", "開く", "保存", "翻訳", "言語", "ウィンドウ", "設定",
+			"エラー" } };
+	String[] extras = { "{0}", "%s", "...", "!", "?", ":", " (%d)",
+		"'{1}'" };
+
+	Random random = new Random(SEED);
+	List<String> lines = new ArrayList<>(entries);
+	for (int i = 0; i < entries; i++) {
+	    String[] script = words[i % 10 < 7 ? 0 : 1 + i % 3];
+	    StringBuilder sb = new StringBuilder();
+	    int length = 1 + random.nextInt(random.nextInt(10) < 8 ? 12 : 60);
+	    for (int w = 0; w < length; w++) {
+		if (w > 0) {
+		    sb.append(" ");
+		}
+		sb.append(script[random.nextInt(script.length)]);
+	    }
+	    if (random.nextInt(4) == 0) {
+		sb.append(extras[random.nextInt(extras.length)]);
+	    }
+	    lines.add((i + 1) + "=" + sb);
+	}
+	return lines;
+    }
+
+}
@@ -2,12 +2,16 @@ package main.java.logic.translation.api.openai;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
-import java.util.StringTokenizer;
 
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
 import com.theokanning.openai.completion.chat.ChatMessage;
 
-import main.java.logic.translation.api.ApiRequestBuilder;
+import main.java.logic.translation.api.HedgingPolicy;
+import main.java.logic.translation.api.MultiLanguageRequestBuilder;
+import main.java.logic.translation.api.RateLimiter;
+import main.java.logic.translation.api.RetryPolicy;
 import main.java.util.exception.PropertiesException;
 import main.java.util.resources.PropertyLoader;
 import main.java.util.resources.ResourceLoader;
@@ -20,25 +24,88 @@ import main.java.util.resources.ResourceLoader;
  * @author Adriana R.F. (uo282798@uniovi.es)
  * @version May 2024
  */
-public class OpenAIApiRequestBuilder implements ApiRequestBuilder {
+public class OpenAIApiRequestBuilder implements MultiLanguageRequestBuilder {
 
-    public static Properties settings;
+    private final Properties settings;
+
+    public final static String DEFAULT_BASE_URL = "https://api.openai.com/";
+
+    // Start of each language section of multi-language answers
+    public final static String SECTION = "### ";
+    private final static String REFERENCES = "Past translations of similar texts, for reference only (do not include them in the answer):\n";
 
     public OpenAIApiRequestBuilder() throws PropertiesException {
-	settings = ResourceLoader.getApiSettings();
+	this.settings = ResourceLoader.getApiSettings();
     }
 
     @Override
     public List<ChatMessage> buildRequests(Properties properties,
 	    String sourceLang, String targetLang) {
+	return buildRequests(properties, sourceLang, targetLang, null);
+    }
 
-	String command = String.format(
-		"Translate all property values from %s to %s:\n", sourceLang,
-		targetLang);
-	String[] prompts = buildPrompts(command, properties);
+    @Override
+    public List<ChatMessage> buildRequests(Properties properties,
+	    String sourceLang, String targetLang, Properties references) {
+
+	String command = isJson() ? String.format(
+		"Translate the \"value\" of all these properties from %s to %s.\n"
+			+ "Answer only with a JSON array of objects {\"key\": ..., \"value\": ...}, one per property:\n",
+		sourceLang, targetLang)
+		: String.format(
+			"Translate all property values from %s to %s:\n",
+			sourceLang, targetLang);
+	if (references != null && !references.isEmpty()) {
+	    command = REFERENCES + buildReferences(references) + "\n"
+		    + command;
+	}
+	String[] prompts = buildPrompts(command, properties, 1);
 	return buildMessages(prompts);
     }
 
+    @Override
+    public List<ChatMessage> buildRequests(Properties properties,
+	    String sourceLang, List<String> targetLangs,
+	    Map<String, Properties> references) {
+
+	String command = isJson() ? String.format(
+		"Translate the \"value\" of all these properties from %s to each of these languages: %s.\n"
+			+ "Answer only with a JSON array of objects {\"language\": ..., \"key\": ..., \"value\": ...}, one per property and language:\n",
+		sourceLang, String.join(", ", targetLangs))
+		: String.format(
+			"Translate all property values from %s to each of these languages: %s.\n"
+				+ "For each language, write a line \"%s<language>\" followed by all the translated properties:\n",
+			sourceLang, String.join(", ", targetLangs), SECTION);
+	StringBuilder sb = new StringBuilder();
+	for (String targetLang : targetLangs) {
+	    Properties refs = references.get(targetLang);
+	    if (refs != null && !refs.isEmpty()) {
+		sb.append(targetLang).append(":\n")
+			.append(buildReferences(refs));
+	    }
+	}
+	if (sb.length() > 0) {
+	    command = REFERENCES + sb + "\n" + command;
+	}
+	String[] prompts = buildPrompts(command, properties,
+		targetLangs.size());
+	return buildMessages(prompts);
+    }
+
+    /*
+     * Past translations of similar texts, so that new ones are consistent with
+     * them.
+     */
+    private String buildReferences(Properties references) {
+	StringBuilder sb = new StringBuilder();
+	for (String original : PropertyLoader.getKeys(references)) {
+	    sb.append(original.replace("\n", " ")).append(" => ")
+		    .append(references.getProperty(original).replace("\n", " "))
+		    .append("\n");
+	}
+	return sb.toString();
+    }
+
     /**
      * Given a full set of properties and a command (specifying the translation
      * from one language to another), and taking into account the number of
@@ -48,19 +115,58 @@ public class OpenAIApiRequestBuilder implements ApiRequestBuilder {
      * @param command:    of the format "translate (...) from language A to
      *                    language B"
      * @param properties: full set of i18n properties
+     * @param languages:  number of target languages (the answer is as long as
+     *                    the properties times them)
      * 
      * @return a list of string prompts
      */
-    private String[] buildPrompts(String command, Properties properties) {
-	int requestNumber = calculateRequestNumber(command, properties);
-	String[] prompts = buildSubPrompts(command, properties, requestNumber);
+    private String[] buildPrompts(String command, Properties properties,
+	    int languages) {
+	List<String> lines = new ArrayList<>();
+	for (String key : PropertyLoader.getKeys(properties)) {
+	    lines.add(buildLine(key, properties.getProperty(key)));
+	}
+
+	List<List<String>> chunks = getPlanner(languages).plan(command, lines);
+	String[] prompts = new String[chunks.size()];
+	for (int i = 0; i < prompts.length; i++) {
+	    StringBuilder prompt = new StringBuilder(command);
+	    for (String line : chunks.get(i)) {
+		prompt.append("\n").append(line);
+	    }
+	    prompts[i] = prompt.toString();
+	}
 	return prompts;
     }
 
+    /**
+     * @param languages number of target languages of each request
+     * @return planner of the requests, according to the token limits of the
+     *         model
+     */
+    public ChunkPlanner getPlanner(int languages) {
+	return new ChunkPlanner(getTokenLimit(), getMaxTokens(),
+		getOutputRatio() * languages);
+    }
+
     /*
      * Auxiliary functions
      */
 
+    /*
+     * Line of a property in a prompt: key=value, or a JSON object (which can
+     * hold any value, i.e. multi-line ones).
+     */
+    private String buildLine(String key, String value) {
+	if (isJson()) {
+	    JsonStringEncoder encoder = JsonStringEncoder.getInstance();
+	    return "{\"key\": \"" + new String(encoder.quoteAsString(key))
+		    + "\", \"value\": \""
+		    + new String(encoder.quoteAsString(value)) + "\"}";
+	}
+	return key + "=" + value.replace("\n", "");
+    }
+
     /*
      * Builds user messages with the specified sub-prompts.
      */
@@ -78,70 +184,177 @@ public class OpenAIApiRequestBuilder implements ApiRequestBuilder {
     }
 
     /*
-     * Divides the whole requested text into a set of requests in order to
-     * compartmentalize jobs and provide a complete result.
-     */
-    private String[] buildSubPrompts(String promptHeader, Properties properties,
-	    int requestNumber) {
-	String[] subPrompts = new String[requestNumber];
-	int batchSize = properties.size() / requestNumber;
-	int remainder = properties.size() % requestNumber;
-
-	List<String> keys = PropertyLoader.getKeys(properties);
-	String prompt = "";
-	int index = 0;
-
-	for (int i = 0; i < requestNumber; i++) {
-	    prompt = promptHeader;
-	    int size = batchSize + (i < remainder ? 1 : 0);
-	    for (String key : keys.subList(index, index + size)) {
-		prompt += "\n" + key + "="
-			+ (properties.getProperty(key).replace("\n", ""));
-	    }
-	    index += size;
-	    subPrompts[i] = prompt;
+     * Getters for API setting values (number of max tokens, engine name...)
+     */
+
+    @Override
+    public String getModel() {
+	return String.valueOf(settings.getProperty("_ENGINE"));
+    }
+
+    @Override
+    public double getTemperature() {
+	return Double.valueOf(settings.getProperty("_TEMPERATURE"));
+    }
+
+    @Override
+    public int getMaxTokens() {
+	return Integer.valueOf(settings.getProperty("_MAX_TOKENS").trim());
+    }
+
+    /**
+     * @return max. number of tokens of a request and its answer (context
+     *         window of the model)
+     */
+    public int getTokenLimit() {
+	return Integer.valueOf(
+		settings.getProperty("_TOKEN_LIMITS_PER_REQUEST").trim());
+    }
+
+    /**
+     * @return expected number of tokens of an answer, per token of the
+     *         properties sent (by default, 1.5)
+     */
+    public double getOutputRatio() {
+	try {
+	    return Double.valueOf(settings.getProperty("_OUTPUT_RATIO").trim());
+	} catch (Exception e) {
+	    return 1.5;
 	}
+    }
 
-	return subPrompts;
+    @Override
+    public boolean isMultiLanguage() {
+	return Boolean.parseBoolean(
+		String.valueOf(settings.getProperty("_MULTI_LANGUAGE")).trim());
     }
 
-    /*
-     * Getters for API setting values (number of max tokens, engine name...)
+    /**
+     * @return retry policy of failed requests (max. attempts, delays and time
+     *         spent on each of them)
      */
+    public RetryPolicy getRetryPolicy() {
+	return new RetryPolicy(getSetting("_RETRY_ATTEMPTS", 5),
+		getSetting("_RETRY_BASE_DELAY", 1000),
+		getSetting("_RETRY_MAX_DELAY", 30000),
+		getSetting("_RETRY_MAX_TIME", 120000));
+    }
 
-    private int calculateRequestNumber(String promptHeader,
-	    Properties properties) {
+    /**
+     * @return rate limiter of the requests to the model (not limited if its
+     *         budgets are not set)
+     */
+    public RateLimiter getRateLimiter() {
+	return RateLimiter.get(getModel(),
+		getSetting("_REQUESTS_PER_MINUTE", 0),
+		getSetting("_TOKENS_PER_MINUTE", 0));
+    }
 
-	int totalTokens = new StringTokenizer(promptHeader).countTokens();
+    /**
+     * @return hedging policy of slow requests to the model (not hedged if its
+     *         percentile is not set)
+     */
+    public HedgingPolicy getHedgingPolicy() {
+	return HedgingPolicy.get(getModel(), getSetting("_HEDGE_PERCENTILE", 0.0),
+		getSetting("_HEDGE_BUDGET", 0.1));
+    }
+
+    /**
+     * @return max. number of rounds of follow-up requests of missing
+     *         translations (by default, 2)
+     */
+    public int getRepairRounds() {
+	return getSetting("_REPAIR_ROUNDS", 2);
+    }
 
-	// Calculate the total number of tokens for the given properties
-	for (Object property : properties.values()) {
-	    totalTokens += new StringTokenizer((String) property).countTokens();
+    /**
+     * @return max. number of missing translations per follow-up request (by
+     *         default, 20)
+     */
+    public int getRepairBatch() {
+	return Math.max(1, getSetting("_REPAIR_BATCH", 20));
+    }
+
+    private int getSetting(String name, int defaultValue) {
+	try {
+	    return Integer.valueOf(settings.getProperty(name).trim());
+	} catch (Exception e) {
+	    return defaultValue;
 	}
+    }
 
-	// Calculate the number of requests needed
-	int maxTokens = getMaxTokens();
-	int requestsNeeded = maxTokens / totalTokens;
-	if (totalTokens % maxTokens != 0) {
-	    requestsNeeded++; // Round up if there are remaining tokens
+    private double getSetting(String name, double defaultValue) {
+	try {
+	    return Double.valueOf(settings.getProperty(name).trim());
+	} catch (Exception e) {
+	    return defaultValue;
 	}
+    }
 
-	return (requestsNeeded > 1 ? 1 : requestsNeeded);
+    /**
+     * @return max. time (s) to set up a connection to the API (by default,
+     *         10)
+     */
+    public int getConnectTimeout() {
+	return getSetting("_CONNECT_TIMEOUT", 10);
+    }
+
+    /**
+     * @return max. time (s) to wait for data from the API (by default, 90)
+     */
+    public int getReadTimeout() {
+	return getSetting("_READ_TIMEOUT", 90);
+    }
+
+    /**
+     * @return max. number of idle connections kept alive (by default, 8)
+     */
+    public int getPoolConnections() {
+	return Math.max(1, getSetting("_POOL_CONNECTIONS", 8));
+    }
+
+    /**
+     * @return time (s) an idle connection is kept alive (by default, 300)
+     */
+    public int getKeepAlive() {
+	return getSetting("_KEEP_ALIVE", 300);
+    }
+
+    /**
+     * @return base URL of the API (by default, that of OpenAI)
+     */
+    public String getBaseUrl() {
+	String url = settings.getProperty("_BASE_URL");
+	return url == null || url.trim().isEmpty() ? DEFAULT_BASE_URL
+		: url.trim();
     }
 
     @Override
-    public String getModel() {
-	return String.valueOf(settings.getProperty("_ENGINE"));
+    public boolean isJson() {
+	return Boolean.parseBoolean(
+		String.valueOf(settings.getProperty("_JSON_MODE")).trim());
     }
 
     @Override
-    public double getTemperature() {
-	return Double.valueOf(settings.getProperty("_TEMPERATURE"));
+    public boolean isCompactKeys() {
+	return Boolean.parseBoolean(
+		String.valueOf(settings.getProperty("_COMPACT_KEYS")).trim());
     }
 
     @Override
-    public int getMaxTokens() {
-	return Integer.valueOf(settings.getProperty("_MAX_TOKENS"));
+    public boolean isStreaming() {
+	return Boolean.parseBoolean(
+		String.valueOf(settings.getProperty("_STREAM")).trim());
+    }
+
+    @Override
+    public int getParallelism() {
+	try {
+	    return Math.max(1,
+		    Integer.valueOf(settings.getProperty("_PARALLELISM").trim()));
+	} catch (Exception e) {
+	    return 1;
+	}
     }
 
 }
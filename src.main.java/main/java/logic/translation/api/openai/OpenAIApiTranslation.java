@@ -1,9 +1,27 @@
 package main.java.logic.translation.api.openai;
 
-import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import com.theokanning.openai.OpenAiHttpException;
 import com.theokanning.openai.completion.chat.ChatCompletionRequest;
@@ -11,9 +29,21 @@ import com.theokanning.openai.completion.chat.ChatCompletionResult;
 import com.theokanning.openai.completion.chat.ChatMessage;
 import com.theokanning.openai.service.OpenAiService;
 
-import main.java.gui.util.ExceptionHandler;
+import retrofit2.HttpException;
+import retrofit2.Response;
+
 import main.java.logic.translation.api.ApiRequestBuilder;
+import main.java.logic.translation.api.ApiResults;
 import main.java.logic.translation.api.ApiTranslation;
+import main.java.logic.translation.api.HedgingPolicy;
+import main.java.logic.translation.api.JsonResponseParser;
+import main.java.logic.translation.api.KeyCodec;
+import main.java.logic.translation.api.MultiLanguageRequestBuilder;
+import main.java.logic.translation.api.PropertyStreamParser;
+import main.java.logic.translation.api.RateLimiter;
+import main.java.logic.translation.api.ResponseParser;
+import main.java.logic.translation.api.RetryPolicy;
+import main.java.logic.translation.api.TranslationListener;
 import main.java.util.exception.PropertiesException;
 import main.java.util.exception.ResourceException;
 import main.java.util.exception.TranslationException;
@@ -29,12 +59,48 @@ import main.java.util.resources.ResourceLoader;
  */
 public class OpenAIApiTranslation implements ApiTranslation {
 
-    // Translation resultzs
-    private Properties results;
+    private final static Logger LOGGER = Logger
+	    .getLogger(OpenAIApiTranslation.class.getName());
+
+    private final ApiRequestBuilder apiReq;
+    private final OpenAiService service;
+
+    // Translations in progress (each of them waits for its requests)
+    private final static ExecutorService translations = Executors
+	    .newCachedThreadPool(r -> {
+		Thread t = new Thread(r, "openai-translation");
+		t.setDaemon(true);
+		return t;
+	    });
+
+    // Requests sent at the same time (at most, parallelism): one pool per
+    // parallelism, as instances built with another one may still be in use
+    private final static Map<Integer, ExecutorService> executors = new HashMap<>();
+    private final ExecutorService requests;
+
+    // Retries of each request
+    private final RetryPolicy retry;
 
-    private static ApiRequestBuilder apiReq;
-    private static OpenAiService service;
-    private final static int TIMEOUT = 90;
+    // Duplicates of slow requests
+    private final HedgingPolicy hedging;
+
+    // Budgets of requests and tokens per minute, shared by all requests
+    private final RateLimiter limiter;
+
+    // Follow-up requests of missing or malformed translations
+    private final int repairRounds;
+    private final int repairBatch;
+    private final AtomicLong repairRequests = new AtomicLong();
+    private final AtomicLong repairedKeys = new AtomicLong();
+
+    // Tokens saved by compact keys, and latency of the requests (chunks)
+    private final AtomicLong savedTokens = new AtomicLong();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong requestTime = new AtomicLong();
+
+    // Time (ms) until the reply of each chunk, retries and duplicates included
+    private final List<Long> latencies = Collections
+	    .synchronizedList(new ArrayList<>());
 
     // Error codes
     private final static String QUOTA_REACHED = "insufficient_quota";
@@ -42,7 +108,8 @@ public class OpenAIApiTranslation implements ApiTranslation {
 
     /**
      * Creates an ApiTranslation object aimed to manage requests to the
-     * ChatCompletionsAPI.
+     * ChatCompletionsAPI. It keeps no state of any translation, so that it can
+     * carry out several of them at the same time.
      * 
      * @throws PropertiesException (extending ResourceException) in case api
      *                             settings provided in program properties are
@@ -52,58 +119,261 @@ public class OpenAIApiTranslation implements ApiTranslation {
      *                             not found
      */
     public OpenAIApiTranslation() throws ResourceException {
-	service = new OpenAiService(ResourceLoader.getApiKey(),
-		Duration.ofSeconds(TIMEOUT));
-	apiReq = new OpenAIApiRequestBuilder();
+	OpenAIApiRequestBuilder builder = new OpenAIApiRequestBuilder();
+	// Shared by all translations (and so are its connections)
+	service = OpenAIClient.get(ResourceLoader.getApiKey(), builder)
+		.getService();
+	apiReq = builder;
+	requests = getExecutor(apiReq.getParallelism());
+	retry = builder.getRetryPolicy()
+		.retryIf(e -> !isError(e, QUOTA_REACHED))
+		.retryAfter(OpenAIApiTranslation::getRetryAfter);
+	limiter = builder.getRateLimiter();
+	hedging = builder.getHedgingPolicy();
+	repairRounds = builder.getRepairRounds();
+	repairBatch = builder.getRepairBatch();
+    }
+
+    /*
+     * Bounded pool of (daemon) threads sending requests, shared by all
+     * translations with the same parallelism. Pools are never shut down, so
+     * that changing the parallelism does not affect translations in progress
+     * (idle daemon threads do not keep the application alive).
+     */
+    private static synchronized ExecutorService getExecutor(int parallelism) {
+	ExecutorService executor = executors.get(parallelism);
+	if (executor == null) {
+	    executor = Executors.newFixedThreadPool(parallelism, r -> {
+		Thread t = new Thread(r, "openai-request-" + parallelism);
+		t.setDaemon(true);
+		return t;
+	    });
+	    executors.put(parallelism, executor);
+	}
+	return executor;
+    }
+
+    /**
+     * Translates a given set of properties in the background. If streaming,
+     * the listener is notified of each translation as soon as it is received;
+     * otherwise, once its request is over.
+     */
+    @Override
+    public CompletableFuture<ApiResults> translateAsync(Properties properties,
+	    String sourceLang, String targetLang, Properties references,
+	    TranslationListener listener) {
+	return supply(() -> new ApiResults(getApiResults(properties,
+		sourceLang, targetLang, references, listener)));
+    }
+
+    /**
+     * Translates a given set of properties into several languages with the
+     * same requests (only if multi-language), whose answers have a section per
+     * language.
+     */
+    @Override
+    public CompletableFuture<Map<String, Properties>> translateAsync(
+	    Properties properties, String sourceLang, List<String> targetLangs,
+	    Map<String, Properties> references, TranslationListener listener) {
+	if (!isMultiLanguage()) {
+	    return ApiTranslation.super.translateAsync(properties, sourceLang,
+		    targetLangs, references, listener);
+	}
+	return supply(() -> getApiResults(properties, sourceLang, targetLangs,
+		references, listener));
     }
 
     @Override
-    public Properties translate(Properties properties, String sourceLang,
-	    String targetLang) throws TranslationException {
-	return getApiResults(properties, sourceLang, targetLang);
+    public boolean isMultiLanguage() {
+	return apiReq instanceof MultiLanguageRequestBuilder
+		&& ((MultiLanguageRequestBuilder) apiReq).isMultiLanguage();
     }
 
     @Override
-    public Properties getResults() {
-	return this.results;
+    public boolean isStreaming() {
+	return apiReq.isStreaming();
+    }
+
+    /**
+     * @return number of follow-up requests sent to repair missing or
+     *         malformed translations (apart from the rest)
+     */
+    public long getRepairRequests() {
+	return repairRequests.get();
+    }
+
+    /**
+     * @return number of missing or malformed translations repaired
+     */
+    public long getRepairedKeys() {
+	return repairedKeys.get();
+    }
+
+    /**
+     * @return estimated number of tokens (of prompts and answers) saved by
+     *         replacing keys with positional ids
+     */
+    public long getSavedTokens() {
+	return savedTokens.get();
+    }
+
+    /**
+     * @return average time (ms) of each request (chunk) sent, until its whole
+     *         answer was received
+     */
+    public double getAverageLatency() {
+	long count = requestCount.get();
+	return count == 0 ? 0 : (double) requestTime.get() / count;
+    }
+
+    /**
+     * @return time (ms) until the reply of each chunk sent so far, including
+     *         its retries and duplicates
+     */
+    public List<Long> getLatencies() {
+	synchronized (latencies) {
+	    return new ArrayList<>(latencies);
+	}
     }
 
     /*
      * ######################## AUXILIARY METHODS ##############################
      */
 
+    /*
+     * Carries out a task in the background, whose future is completed
+     * exceptionally if it fails.
+     */
+    private static <T> CompletableFuture<T> supply(Callable<T> task) {
+	CompletableFuture<T> future = new CompletableFuture<>();
+	translations.execute(() -> {
+	    try {
+		future.complete(task.call());
+	    } catch (Throwable e) {
+		future.completeExceptionally(e);
+	    }
+	});
+	return future;
+    }
+
     private Properties getApiResults(Properties properties, String sourceLang,
-	    String targetLang) throws TranslationException {
-	List<ChatMessage> messages = getRequests(properties, sourceLang,
-		targetLang);
-	try {
-	    this.results = PropertyLoader.getProperties(getResults(messages));
-	    return this.results;
-	} catch (OpenAiHttpException e) {
-	    // Try again in 30s if rate limit has been reached
-	    if (isError(e, RATE_LIMIT)) {
+	    String targetLang, Properties references,
+	    TranslationListener listener) throws TranslationException {
+	KeyCodec codec = getCodec(properties);
+	List<ChatMessage> messages = getRequests(codec.encode(properties),
+		sourceLang, targetLang, references);
+	Properties results = new Properties();
+	results.putAll(getResults(messages,
+		Collections.singletonList(targetLang),
+		properties.stringPropertyNames(), codec, listener)
+		.get(targetLang));
+	repair(properties, sourceLang, targetLang, references, results, codec,
+		listener);
+	return results;
+    }
 
-		try {
-		    Thread.sleep(3000);
-		    translate(properties, sourceLang, targetLang);
-		} catch (Exception e2) {
-		    // Nothing
+    private Map<String, Properties> getApiResults(Properties properties,
+	    String sourceLang, List<String> targetLangs,
+	    Map<String, Properties> references, TranslationListener listener)
+	    throws TranslationException {
+	if (properties.isEmpty()) {
+	    throw new TranslationException();
+	}
+
+	KeyCodec codec = getCodec(properties);
+	List<ChatMessage> messages = ((MultiLanguageRequestBuilder) apiReq)
+		.buildRequests(codec.encode(properties), sourceLang,
+			targetLangs, references);
+	Map<String, Properties> sections = getResults(messages, targetLangs,
+		properties.stringPropertyNames(), codec, listener);
+	for (String targetLang : targetLangs) {
+	    repair(properties, sourceLang, targetLang,
+		    references == null ? null : references.get(targetLang),
+		    sections.get(targetLang), codec, listener);
+	}
+	return sections;
+    }
+
+    /*
+     * Codec of the keys of a set of properties: positional ids, if compact,
+     * or the keys themselves.
+     */
+    private KeyCodec getCodec(Properties properties) {
+	return apiReq.isCompactKeys()
+		? new KeyCodec(properties.stringPropertyNames())
+		: new KeyCodec();
+    }
+
+    /**
+     * Requests again, in small batches, those translations missing from
+     * (or malformed in, i.e. empty) the results of the API, rather than all of
+     * them. It is done, at most, for the configured number of rounds.
+     * 
+     * @param properties requested properties
+     * @param sourceLang source language the original content is in
+     * @param targetLang target language that the user wishes to translate to
+     * @param references past translations of similar texts (null if none)
+     * @param results    results of the API, to complete
+     * @param codec      codec of the requested keys
+     * @param listener   listener of the translations (null for none)
+     * @throws TranslationException if interrupted while waiting for the replies
+     */
+    private void repair(Properties properties, String sourceLang,
+	    String targetLang, Properties references, Properties results,
+	    KeyCodec codec, TranslationListener listener)
+	    throws TranslationException {
+	for (int round = 1; round <= repairRounds; round++) {
+	    List<String> missing = getMissing(properties, results);
+	    if (missing.isEmpty()) {
+		return;
+	    }
+
+	    List<ChatMessage> messages = new ArrayList<>();
+	    for (int i = 0; i < missing.size(); i += repairBatch) {
+		Properties batch = new Properties();
+		for (String key : missing.subList(i,
+			Math.min(missing.size(), i + repairBatch))) {
+		    batch.put(key, properties.getProperty(key));
 		}
-	    } else if (isError(e, QUOTA_REACHED)) {
-		// Show error message and terminate application
-		ExceptionHandler.handle(null, e, true);
+		messages.addAll(apiReq.buildRequests(codec.encode(batch),
+			sourceLang, targetLang, references));
 	    }
-	} catch (Exception e) {
-	    // Retry
-	    try {
-		Thread.sleep(3000);
-		translate(properties, sourceLang, targetLang);
-	    } catch (Exception e2) {
-		// Nothing
+	    repairRequests.addAndGet(messages.size());
+
+	    Properties repaired = getResults(messages,
+		    Collections.singletonList(targetLang),
+		    new HashSet<>(missing), codec, listener).get(targetLang);
+	    int count = 0;
+	    for (String key : missing) {
+		String value = repaired.getProperty(key);
+		if (value != null && !value.trim().isEmpty()) {
+		    results.put(key, value);
+		    count++;
+		}
 	    }
+	    repairedKeys.addAndGet(count);
+	    LOGGER.log(Level.INFO,
+		    "Repair round {0} into {1}: {2} of {3} missing translations repaired with {4} requests",
+		    new Object[] { round, targetLang, count, missing.size(),
+			    messages.size() });
 	}
-	return this.results;
+    }
 
+    /*
+     * Keys of the requested properties whose translations are missing or
+     * empty.
+     */
+    private List<String> getMissing(Properties properties,
+	    Properties results) {
+	List<String> missing = new ArrayList<>();
+	for (String key : PropertyLoader.getKeys(properties)) {
+	    String value = results.getProperty(key);
+	    if (value == null || value.trim().isEmpty()) {
+		missing.add(key);
+	    }
+	}
+	Collections.sort(missing);
+	return missing;
     }
 
     /**
@@ -112,18 +382,21 @@ public class OpenAIApiTranslation implements ApiTranslation {
      * @param properties Properties object containing localization texts
      * @param sourceLang source language the original content is in
      * @param targetLang target language that the user wishes to translate to
+     * @param references past translations of similar texts (null if none)
      * 
      * @return prompt: string containing all texts to translate @ in case of
      *         empty properties or API error
      */
     private List<ChatMessage> getRequests(Properties properties,
-	    String sourceLang, String targetLang) throws TranslationException {
+	    String sourceLang, String targetLang, Properties references)
+	    throws TranslationException {
 
 	List<ChatMessage> messages = new ArrayList<>();
 
 	// Build the respective messages
 	if (!properties.isEmpty()) {
-	    messages = apiReq.buildRequests(properties, sourceLang, targetLang);
+	    messages = apiReq.buildRequests(properties, sourceLang, targetLang,
+		    references);
 	} else {
 	    throw new TranslationException();
 	}
@@ -134,44 +407,305 @@ public class OpenAIApiTranslation implements ApiTranslation {
     /**
      * Parses results from a set of messages to request to the API.
      * 
-     * @param messages list of chat messages (requests) to input to the API
-     * @return results unified results, as a string, of all these requests
-     * @throws InterruptedException
+     * All requests are sent at the same time (at most, as many as the
+     * configured parallelism), and their replies are parsed as they are
+     * received. Each request that fails is retried on its own, according to
+     * the retry policy: if it is given up on, its results are missing, but the
+     * rest are kept.
+     * 
+     * @param messages  list of chat messages (requests) to input to the API
+     * @param languages target languages of the requests
+     * @param keys      requested keys (the rest are ignored)
+     * @param codec     codec of the requested keys in the requests
+     * @param listener  listener of the translations (null for none)
+     * @return results unified results of all these requests, per language
+     * @throws TranslationException if interrupted while waiting for the
+     *                              replies, or if the quota of the API has
+     *                              been reached
      * 
      */
-    private String getResults(List<ChatMessage> messages) {
+    private Map<String, Properties> getResults(List<ChatMessage> messages,
+	    List<String> languages, Set<String> keys, KeyCodec codec,
+	    TranslationListener listener) throws TranslationException {
+
+	Map<String, Properties> results = new LinkedHashMap<>();
+	for (String language : languages) {
+	    results.put(language, new Properties());
+	}
+	long retries = retry.getRetries();
+	long backoffTime = retry.getBackoffTime();
+	long waitTime = limiter.getWaitTime();
+	long connections = OpenAIClient.getConnections();
+	long connectTime = OpenAIClient.getConnectTime();
+	long acquired = OpenAIClient.getAcquired();
+	long hedges = hedging.getHedges();
+	long wins = hedging.getWins();
+	long saved = savedTokens.get();
+	long count = requestCount.get();
+	long time = requestTime.get();
+	if (codec.isCompact()) {
+	    // Each key is sent once
+	    for (String key : keys) {
+		savedTokens.addAndGet(getSaving(codec, key));
+	    }
+	}
 
-	StringBuilder results = new StringBuilder();
-	int i = 1;
+	try {
+	    List<Integer> failed = send(messages, languages, keys, results,
+		    codec, listener);
+	    if (!failed.isEmpty()) {
+		LOGGER.log(Level.WARNING, "{0} of {1} requests failed",
+			new Object[] { failed.size(), messages.size() });
+	    }
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new TranslationException();
+	}
+
+	if (retry.getRetries() > retries) {
+	    LOGGER.log(Level.INFO, "{0} retries, {1} ms backing off",
+		    new Object[] { retry.getRetries() - retries,
+			    retry.getBackoffTime() - backoffTime });
+	}
+	if (limiter.getWaitTime() > waitTime) {
+	    LOGGER.log(Level.INFO, "{0} ms waiting for rate limits",
+		    limiter.getWaitTime() - waitTime);
+	}
+	if (OpenAIClient.getAcquired() > acquired) {
+	    long created = OpenAIClient.getConnections() - connections;
+	    LOGGER.log(Level.INFO,
+		    "{0} new connections ({1} ms setting them up), {2} reused",
+		    new Object[] { created,
+			    OpenAIClient.getConnectTime() - connectTime,
+			    OpenAIClient.getAcquired() - acquired - created });
+	}
+	if (hedging.getHedges() > hedges) {
+	    LOGGER.log(Level.INFO,
+		    "{0} slow requests hedged, {1} answered first by their duplicates",
+		    new Object[] { hedging.getHedges() - hedges,
+			    hedging.getWins() - wins });
+	}
+	if (codec.isCompact() && requestCount.get() > count) {
+	    LOGGER.log(Level.INFO,
+		    "Compact keys: ~{0} tokens saved in {1} requests ({2} ms per request)",
+		    new Object[] { savedTokens.get() - saved,
+			    requestCount.get() - count,
+			    (requestTime.get() - time)
+				    / (requestCount.get() - count) });
+	}
+
+	return results;
+    }
+
+    /*
+     * Sends a set of requests concurrently (each of them retried on failure,
+     * and hedged if slow), and waits for their replies.
+     * 
+     * @return indexes of the requests that failed
+     * @throws TranslationException if the quota of the API has been reached
+     *                              (once all of them have replied), as no
+     *                              further requests can succeed
+     */
+    private List<Integer> send(List<ChatMessage> messages,
+	    List<String> languages, Set<String> keys,
+	    Map<String, Properties> results, KeyCodec codec,
+	    TranslationListener listener)
+	    throws InterruptedException, TranslationException {
+
+	List<Future<Integer>> futures = new ArrayList<>();
 	for (ChatMessage msg : messages) {
-	    List<ChatMessage> sub = new ArrayList<>();
-	    sub.add(msg);
-	    ChatCompletionRequest completionRequest = ChatCompletionRequest
-		    .builder().model(apiReq.getModel())
-		    .temperature(apiReq.getTemperature())
-		    .maxTokens(apiReq.getMaxTokens()).messages(sub).build();
-
-	    // In case rate limit is reached, try again!
-	    ChatCompletionResult completionRes = service
-		    .createChatCompletion(completionRequest);
-	    results.append(completionRes.getChoices().get(0).getMessage()
-		    .getContent().replace("-", ""));
+	    futures.add(requests.submit(() -> {
+		long start = System.currentTimeMillis();
+		// Translations already published (by failed attempts too)
+		Set<String> published = ConcurrentHashMap.newKeySet();
+		try {
+		    return retry.call(() -> {
+			// Only the attempt that answers first is published
+			AtomicInteger owner = new AtomicInteger(-1);
+			return hedging.call(attempt -> () -> {
+			    int parsed = request(msg,
+				    getParser(languages, keys, results, codec,
+					    listener, owner, attempt,
+					    published));
+			    if (!owner.compareAndSet(-1, attempt)
+				    && owner.get() != attempt) {
+				// Its duplicate answered first
+				throw new CancellationException();
+			    }
+			    return parsed;
+			});
+		    });
+		} finally {
+		    latencies.add(System.currentTimeMillis() - start);
+		}
+	    }));
+	}
+
+	List<Integer> failed = new ArrayList<>();
+	Throwable quota = null;
+	for (int i = 0; i < futures.size(); i++) {
+	    try {
+		futures.get(i).get();
+	    } catch (ExecutionException e) {
+		if (isError(e.getCause(), QUOTA_REACHED)) {
+		    quota = e.getCause();
+		}
+		LOGGER.log(Level.WARNING, "Request failed", e.getCause());
+		failed.add(i);
+	    }
+	}
+	if (quota != null) {
+	    // Up to the caller (i.e. the GUI) to report it
+	    LOGGER.log(Level.SEVERE, "API quota reached");
+	    TranslationException e = new TranslationException();
+	    e.initCause(quota);
+	    throw e;
+	}
+	return failed;
+    }
 
-	    if (i < messages.size()) {
-		results.append("\n");
+    /*
+     * Parser of the reply to a request, which publishes its translations (as
+     * soon as they are received) into the results of their language, by
+     * their keys. If the request is hedged, only those of the attempt that
+     * answers first (its owner) are. If it is retried, the listener is only
+     * notified of those not already published by a previous attempt.
+     */
+    private ResponseParser getParser(List<String> languages, Set<String> keys,
+	    Map<String, Properties> results, KeyCodec codec,
+	    TranslationListener listener, AtomicInteger owner, int attempt,
+	    Set<String> published) {
+	TranslationListener publisher = (language, id, translation) -> {
+	    if (!owner.compareAndSet(-1, attempt) && owner.get() != attempt) {
+		return;
+	    }
+	    String key = codec.decode(id);
+	    if (key == null) {
+		return;
 	    }
-	    i++;
+	    results.get(language).put(key, translation);
+	    if (!published.add(language + "\u0000" + key)) {
+		return;
+	    }
+	    if (codec.isCompact()) {
+		// Not echoed back
+		savedTokens.addAndGet(getSaving(codec, key));
+	    }
+	    if (listener != null) {
+		listener.translated(language, key, translation);
+	    }
+	};
+	Set<String> ids = codec.encode(keys);
+	return apiReq.isJson()
+		? new JsonResponseParser(languages, ids, publisher)
+		: new PropertyStreamParser(languages, ids, publisher);
+    }
+
+    /*
+     * Tokens saved each time a key is replaced with its id.
+     */
+    private static int getSaving(KeyCodec codec, String key) {
+	return Math.max(0,
+		TokenCounter.count(key) - TokenCounter.count(codec.encode(key)));
+    }
+
+    /*
+     * Sends a single request (once there is budget for it, according to the
+     * rate limits), and waits for its reply.
+     * 
+     * @return number of translations received
+     */
+    private int request(ChatMessage msg, ResponseParser parser)
+	    throws InterruptedException {
+	// Both the prompt and the max. answer count towards the limits
+	int tokens = TokenCounter.count(msg.getContent());
+	limiter.acquire(tokens + apiReq.getMaxTokens());
+	long start = System.currentTimeMillis();
+
+	List<ChatMessage> sub = new ArrayList<>();
+	sub.add(msg);
+	ChatCompletionRequest completionRequest = ChatCompletionRequest
+		.builder().model(apiReq.getModel())
+		.temperature(apiReq.getTemperature())
+		.maxTokens(apiReq.getMaxTokens()).messages(sub).build();
+
+	if (apiReq.isStreaming()) {
+	    stream(completionRequest, parser);
+	} else {
+	    ChatCompletionResult completionRes = service
+		    .createChatCompletion(completionRequest);
+	    parser.append(completionRes.getChoices().get(0).getMessage()
+		    .getContent());
+	    parser.flush();
 	}
 
-	// Return translation
-	return results.toString();
+	long elapsed = System.currentTimeMillis() - start;
+	requestCount.incrementAndGet();
+	requestTime.addAndGet(elapsed);
+	LOGGER.log(Level.FINE,
+		"Request of {0} tokens: {1} translations in {2} ms",
+		new Object[] { tokens, parser.getParsed(), elapsed });
+	return parser.getParsed();
+    }
+
+    /*
+     * Sends a single request, whose reply is parsed as it is received (in
+     * chunks of a few tokens).
+     */
+    private void stream(ChatCompletionRequest completionRequest,
+	    ResponseParser parser) {
+	service.streamChatCompletion(completionRequest)
+		.blockingForEach(chunk -> {
+		    if (chunk.getChoices().isEmpty()) {
+			return;
+		    }
+		    String content = chunk.getChoices().get(0).getMessage()
+			    .getContent();
+		    if (content != null) {
+			parser.append(content);
+		    }
+		});
+	parser.flush();
     }
 
     // Error codes checking
 
-    private boolean isError(OpenAiHttpException e, String code) {
-	return e.code.equals(code);
+    private static boolean isError(Throwable e, String code) {
+	return e instanceof OpenAiHttpException
+		&& code.equals(((OpenAiHttpException) e).code);
+    }
+
+    /*
+     * Time (ms) to wait before retrying a failed request, as stated by the API
+     * in its "retry-after-ms" or "Retry-After" headers (negative if none).
+     */
+    private static long getRetryAfter(Exception e) {
+	Throwable cause = e instanceof OpenAiHttpException ? e.getCause() : e;
+	if (!(cause instanceof HttpException)) {
+	    return -1;
+	}
+	Response<?> response = ((HttpException) cause).response();
+	if (response == null) {
+	    return -1;
+	}
 
+	try {
+	    String millis = response.headers().get("retry-after-ms");
+	    if (millis != null) {
+		return (long) Double.parseDouble(millis.trim());
+	    }
+	    String seconds = response.headers().get("Retry-After");
+	    if (seconds != null) {
+		return (long) (Double.parseDouble(seconds.trim()) * 1000);
+	    }
+	} catch (NumberFormatException e2) {
+	    // HTTP date
+	    Date date = response.headers().getDate("Retry-After");
+	    if (date != null) {
+		return Math.max(0, date.getTime() - System.currentTimeMillis());
+	    }
+	}
+	return -1;
     }
 
 }
@@ -0,0 +1,193 @@
+package main.java.logic.translation.api.openai;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.theokanning.openai.client.OpenAiApi;
+import com.theokanning.openai.service.OpenAiService;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import retrofit2.Retrofit;
+
+/**
+ * Client of the API of OpenAI shared by the whole process: it is created the
+ * first time it is needed, and then reused by all translations, so that its
+ * connections (and their TLS handshakes) are kept alive and shared rather
+ * than set up again for each of them. A new one is only built if its settings
+ * change; previous ones are kept (translations built with them may still be
+ * in use) until the client is shut down, their idle connections closing as
+ * their keep-alive time expires.
+ * 
+ * Its connections are pooled (up to a number of idle ones, for a keep-alive
+ * time), and the time spent setting up new ones is measured.
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public class OpenAIClient {
+
+    // Clients, by their settings
+    private final static Map<String, OpenAIClient> clients = new HashMap<>();
+
+    private final OkHttpClient http;
+    private final OpenAiService service;
+
+    // Statistics
+    private final static AtomicLong connections = new AtomicLong();
+    private final static AtomicLong connectTime = new AtomicLong();
+    private final static AtomicLong acquired = new AtomicLong();
+
+    /**
+     * Retrieves the shared client of some settings, creating it if it did not
+     * exist.
+     * 
+     * @param apiKey   key of the API
+     * @param settings settings of the API (base URL, timeouts, pool...)
+     * @return shared client
+     */
+    public static synchronized OpenAIClient get(String apiKey,
+	    OpenAIApiRequestBuilder settings) {
+	String config = String.join("|", apiKey, settings.getBaseUrl(),
+		String.valueOf(settings.getConnectTimeout()),
+		String.valueOf(settings.getReadTimeout()),
+		String.valueOf(settings.getPoolConnections()),
+		String.valueOf(settings.getKeepAlive()),
+		String.valueOf(settings.getParallelism()));
+	OpenAIClient client = clients.get(config);
+	if (client == null) {
+	    client = new OpenAIClient(apiKey, settings);
+	    clients.put(config, client);
+	}
+	return client;
+    }
+
+    /**
+     * Closes all shared clients (if any): no new requests are accepted, and
+     * their idle connections are closed.
+     */
+    public static synchronized void shutdown() {
+	for (OpenAIClient client : clients.values()) {
+	    client.close();
+	}
+	clients.clear();
+    }
+
+    /**
+     * @return service to send requests to the API
+     */
+    public OpenAiService getService() {
+	return service;
+    }
+
+    /**
+     * @return number of connections set up so far
+     */
+    public static long getConnections() {
+	return connections.get();
+    }
+
+    /**
+     * @return total time (ms) spent setting up connections (DNS, TCP and TLS)
+     */
+    public static long getConnectTime() {
+	return connectTime.get();
+    }
+
+    /**
+     * @return number of requests that got a connection (either new or reused
+     *         from the pool)
+     */
+    public static long getAcquired() {
+	return acquired.get();
+    }
+
+    /*
+     * ######################## AUXILIARY METHODS ##############################
+     */
+
+    private OpenAIClient(String apiKey, OpenAIApiRequestBuilder settings) {
+	// All requests in parallel (and their duplicates) to the same host
+	Dispatcher dispatcher = new Dispatcher();
+	dispatcher.setMaxRequestsPerHost(
+		Math.max(5, settings.getParallelism() * 2));
+	dispatcher.setMaxRequests(
+		Math.max(dispatcher.getMaxRequests(),
+			dispatcher.getMaxRequestsPerHost()));
+
+	this.http = OpenAiService
+		.defaultClient(apiKey,
+			Duration.ofSeconds(settings.getReadTimeout()))
+		.newBuilder().dispatcher(dispatcher)
+		.connectionPool(new ConnectionPool(
+			settings.getPoolConnections(), settings.getKeepAlive(),
+			TimeUnit.SECONDS))
+		.connectTimeout(Duration.ofSeconds(settings.getConnectTimeout()))
+		.eventListenerFactory(call -> new ConnectionListener()).build();
+	Retrofit retrofit = OpenAiService
+		.defaultRetrofit(http, OpenAiService.defaultObjectMapper())
+		.newBuilder().baseUrl(settings.getBaseUrl()).build();
+	this.service = new OpenAiService(retrofit.create(OpenAiApi.class),
+		http.dispatcher().executorService());
+    }
+
+    private void close() {
+	// Requests in flight are completed
+	http.dispatcher().executorService().shutdown();
+	http.connectionPool().evictAll();
+    }
+
+    /*
+     * Measures the time spent setting up each new connection of a call (from
+     * its DNS lookup until it is connected, TLS handshake included).
+     */
+    private static class ConnectionListener extends EventListener {
+
+	private long start;
+
+	@Override
+	public void dnsStart(Call call, String domainName) {
+	    start = System.nanoTime();
+	}
+
+	@Override
+	public void connectStart(Call call, InetSocketAddress address,
+		Proxy proxy) {
+	    if (start == 0) {
+		start = System.nanoTime();
+	    }
+	}
+
+	@Override
+	public void connectEnd(Call call, InetSocketAddress address,
+		Proxy proxy, Protocol protocol) {
+	    connections.incrementAndGet();
+	    connectTime.addAndGet((System.nanoTime() - start) / 1_000_000);
+	    start = 0;
+	}
+
+	@Override
+	public void connectFailed(Call call, InetSocketAddress address,
+		Proxy proxy, Protocol protocol, IOException e) {
+	    start = 0;
+	}
+
+	@Override
+	public void connectionAcquired(Call call, Connection connection) {
+	    acquired.incrementAndGet();
+	}
+
+    }
+
+}
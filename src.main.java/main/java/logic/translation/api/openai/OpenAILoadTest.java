@@ -0,0 +1,174 @@
+package main.java.logic.translation.api.openai;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.ResourceBundle;
+
+import main.java.logic.translation.TranslationManager;
+import main.java.logic.translation.api.SingleFlightTranslation;
+import main.java.logic.translation.cache.TranslationCache;
+import main.java.logic.translation.mode.AutoTranslation;
+import main.java.util.exception.TranslationException;
+
+/**
+ * Load test of automatic translation, run offline against a stub of the API
+ * (see OpenAIStubServer): translates bundles of several sizes, with several
+ * levels of concurrency (number of requests in parallel), and reports for
+ * each of them its throughput and the latency percentiles of its chunks
+ * (until their replies, retries and duplicates included), and the number of
+ * target files that could not be translated.
+ * 
+ * Each run starts from an empty cache, so that every text is requested.
+ * Without API limits (requests and tokens per minute), so that only the
+ * latency of the stub is measured. Each of them is run with keys in full,
+ * with compact keys, and with compact keys and hedging of slow requests, so
+ * that the tokens saved by compact keys and the tail latency cut by hedging
+ * can be compared. Latencies of the stub have a long tail (its slowest
+ * requests take several times its median).
+ * 
+ * Usage: OpenAILoadTest [sizes] [concurrencies] [error rate] [rate limit
+ * rate] [target languages], i.e. OpenAILoadTest 100,1000 1,4,8 0.02 0.05
+ * Spanish,French
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public class OpenAILoadTest {
+
+    private final static long SEED = 42;
+
+    // Keys in full, compact keys, and compact keys with hedging
+    private final static String[] MODES = { "full", "ids", "hedge" };
+    private final static String HEDGE_PERCENTILE = "90";
+
+    public static void main(String[] args) throws Exception {
+	int[] sizes = getInts(args, 0, "100,1000");
+	int[] concurrencies = getInts(args, 1, "1,4,8");
+	double errorRate = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+	double rateLimitRate = args.length > 3 ? Double.parseDouble(args[3])
+		: 0;
+	List<String> languages = Arrays
+		.asList((args.length > 4 ? args[4] : "Spanish").split(","));
+
+	OpenAIStubServer stub = new OpenAIStubServer(0, SEED)
+		.setLatency(200, 0.8, 0.2)
+		.setErrors(errorRate, rateLimitRate, 100).start();
+	System.setProperty("api._BASE_URL", stub.getBaseUrl());
+	System.setProperty("config.API_KEY", "stub");
+	System.setProperty("api._REQUESTS_PER_MINUTE", "0");
+	System.setProperty("api._TOKENS_PER_MINUTE", "0");
+
+	Path dir = Files.createTempDirectory("loadtest");
+	System.out.printf(
+		"%8s %6s %5s %9s %9s %10s %8s %8s %8s %9s %9s %7s %7s%n",
+		"size", "conc.", "mode", "requests", "time(ms)", "props/s",
+		"p50(ms)", "p95(ms)", "p99(ms)", "tok.in", "tok.out",
+		"errors", "failed");
+	try {
+	    for (int size : sizes) {
+		Path source = writeBundle(dir, size);
+		for (int concurrency : concurrencies) {
+		    for (String mode : MODES) {
+			System.setProperty("api._COMPACT_KEYS",
+				String.valueOf(!mode.equals("full")));
+			System.setProperty("api._HEDGE_PERCENTILE",
+				mode.equals("hedge") ? HEDGE_PERCENTILE : "0");
+			run(stub, dir, source, size, concurrency, mode,
+				languages);
+		    }
+		}
+	    }
+	} finally {
+	    stub.stop();
+	}
+	System.exit(0);
+    }
+
+    /*
+     * ######################## AUXILIARY METHODS ##############################
+     */
+
+    private static void run(OpenAIStubServer stub, Path dir, Path source,
+	    int size, int concurrency, String mode, List<String> languages)
+	    throws Exception {
+	System.setProperty("api._PARALLELISM", String.valueOf(concurrency));
+	Path db = Files.createTempFile(dir, "cache", ".db");
+	TranslationManager manager = new TranslationManager(
+		ResourceBundle.getBundle("Messages", Locale.ENGLISH));
+	manager.input(source.toString());
+	manager.setTargetLanguages(languages, null);
+	OpenAIApiTranslation api = new OpenAIApiTranslation();
+	manager.setAutoMode(new AutoTranslation(manager.getSource(),
+		new SingleFlightTranslation(api),
+		new TranslationCache(null, "jdbc:sqlite:" + db)));
+
+	stub.reset();
+	long start = System.nanoTime();
+	int failed = 0;
+	try {
+	    manager.translateAll();
+	} catch (TranslationException e) {
+	    failed = e.getFailedLanguages().size();
+	}
+	long elapsed = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+
+	List<Long> latencies = api.getLatencies();
+	Collections.sort(latencies);
+	System.out.printf(
+		"%8d %6d %5s %9d %9d %10.1f %8d %8d %8d %9d %9d %7d %7d%n",
+		size, concurrency, mode, stub.getRequests(), elapsed,
+		size * languages.size() * 1000.0 / elapsed,
+		getPercentile(latencies, 50), getPercentile(latencies, 95),
+		getPercentile(latencies, 99), stub.getPromptTokens(),
+		stub.getAnswerTokens(), stub.getErrors() + stub.getRateLimits(),
+		failed);
+    }
+
+    /*
+     * Bundle of a given number of (different) texts, of varied lengths.
+     */
+    private static Path writeBundle(Path dir, int size) throws IOException {
+	Properties bundle = new Properties();
+	String[] words = { "file", "open", "save", "translation", "language",
+		"window", "settings", "error", "the", "is", "not", "available" };
+	for (int i = 0; i < size; i++) {
+	    StringBuilder sb = new StringBuilder("Text " + i);
+	    for (int w = 0; w < 3 + i % 12; w++) {
+		sb.append(" ").append(words[(i * 7 + w) % words.length]);
+	    }
+	    bundle.setProperty("gui.cards.app.settings.dialog." + words[i % 7]
+		    + ".button" + i + ".tooltip", sb.toString());
+	}
+	Path path = dir.resolve("loadtest" + size + "_en.properties");
+	try (OutputStream os = Files.newOutputStream(path)) {
+	    bundle.store(os, null);
+	}
+	return path;
+    }
+
+    private static long getPercentile(List<Long> sorted, int percentile) {
+	if (sorted.isEmpty()) {
+	    return 0;
+	}
+	int i = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+	return sorted.get(Math.max(0, i));
+    }
+
+    private static int[] getInts(String[] args, int i, String defaults) {
+	String csv = args.length > i ? args[i] : defaults;
+	List<Integer> ints = new ArrayList<>();
+	for (String s : csv.split(",")) {
+	    ints.add(Integer.parseInt(s.trim()));
+	}
+	return ints.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+}
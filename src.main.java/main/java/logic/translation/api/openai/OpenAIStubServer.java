@@ -0,0 +1,416 @@
+package main.java.logic.translation.api.openai;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local HTTP server which acts as the Chat Completions API of OpenAI, so that
+ * translations can be tested and measured offline (and for free), by setting
+ * the base URL of the API to that of the server: i.e.
+ * -Dapi._BASE_URL=http://localhost:8089/
+ * 
+ * Each property of a request is "translated" into a pseudo-translation of its
+ * value, which only depends on it and on the target language. Answers are in
+ * the format requested (lines key=value or JSON, into one or several
+ * languages), and streamed if requested.
+ * 
+ * Its latency follows a log-normal distribution (given its median and
+ * spread), plus a time per token of the answer. Server errors (500), rate limit
+ * errors (429, with a retry-after-ms header) and streams broken halfway can be
+ * injected at given rates.
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public class OpenAIStubServer {
+
+    private final static ObjectMapper MAPPER = new ObjectMapper();
+    private final static Pattern SINGLE = Pattern
+	    .compile("from .+? to (.+?)[.:]\\n");
+    private final static Pattern MULTI = Pattern
+	    .compile("each of these languages: (.+?)\\.\\n");
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    // Latency (ms): median, spread (sigma of its logarithm) and per token
+    private volatile double median = 200;
+    private volatile double spread = 0.5;
+    private volatile double perToken = 0.2;
+
+    // Rates (0-1) of injected errors
+    private volatile double errorRate = 0;
+    private volatile double rateLimitRate = 0;
+    private volatile long retryAfter = 100;
+    private volatile double dropRate = 0;
+
+    private final Random random;
+
+    // Statistics
+    private final List<Long> latencies = Collections
+	    .synchronizedList(new ArrayList<>());
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong rateLimits = new AtomicLong();
+    private final AtomicLong promptTokens = new AtomicLong();
+    private final AtomicLong answerTokens = new AtomicLong();
+
+    /**
+     * @param port port to listen to (0 for any free port)
+     * @param seed seed of latencies and errors, so that runs can be repeated
+     * @throws IOException if the server cannot be started
+     */
+    public OpenAIStubServer(int port, long seed) throws IOException {
+	this.random = new Random(seed);
+	this.server = HttpServer.create(new InetSocketAddress("localhost", port),
+		0);
+	this.executor = Executors.newCachedThreadPool(r -> {
+	    Thread t = new Thread(r, "openai-stub");
+	    t.setDaemon(true);
+	    return t;
+	});
+	server.createContext("/v1/chat/completions", this::handle);
+	server.setExecutor(executor);
+    }
+
+    public OpenAIStubServer start() {
+	server.start();
+	return this;
+    }
+
+    public void stop() {
+	server.stop(0);
+	executor.shutdownNow();
+    }
+
+    /**
+     * @return base URL of the server, to be used as that of the API
+     */
+    public String getBaseUrl() {
+	return "http://localhost:" + server.getAddress().getPort() + "/";
+    }
+
+    /**
+     * @param median   median latency (ms) of a request
+     * @param spread   spread of latencies (sigma of their logarithm)
+     * @param perToken latency (ms) added per token of an answer
+     * @return this server
+     */
+    public OpenAIStubServer setLatency(double median, double spread,
+	    double perToken) {
+	this.median = median;
+	this.spread = spread;
+	this.perToken = perToken;
+	return this;
+    }
+
+    /**
+     * @param errorRate     rate (0-1) of requests failing with a server error
+     * @param rateLimitRate rate (0-1) of requests failing with a rate limit
+     *                      error
+     * @param retryAfter    time (ms) to wait after a rate limit error
+     * @return this server
+     */
+    public OpenAIStubServer setErrors(double errorRate, double rateLimitRate,
+	    long retryAfter) {
+	this.errorRate = errorRate;
+	this.rateLimitRate = rateLimitRate;
+	this.retryAfter = retryAfter;
+	return this;
+    }
+
+    /**
+     * @param dropRate rate (0-1) of streamed answers broken halfway (with an
+     *                 invalid event), once part of them has been sent
+     * @return this server
+     */
+    public OpenAIStubServer setDrops(double dropRate) {
+	this.dropRate = dropRate;
+	return this;
+    }
+
+    /**
+     * @return latencies (ms) of all the requests answered so far
+     */
+    public List<Long> getLatencies() {
+	synchronized (latencies) {
+	    return new ArrayList<>(latencies);
+	}
+    }
+
+    public long getRequests() {
+	return requests.get();
+    }
+
+    public long getErrors() {
+	return errors.get();
+    }
+
+    public long getRateLimits() {
+	return rateLimits.get();
+    }
+
+    /**
+     * @return estimated tokens of the prompts of all requests so far
+     */
+    public long getPromptTokens() {
+	return promptTokens.get();
+    }
+
+    /**
+     * @return estimated tokens of all the answers so far
+     */
+    public long getAnswerTokens() {
+	return answerTokens.get();
+    }
+
+    /**
+     * Removes all statistics.
+     */
+    public void reset() {
+	latencies.clear();
+	requests.set(0);
+	errors.set(0);
+	rateLimits.set(0);
+	promptTokens.set(0);
+	answerTokens.set(0);
+    }
+
+    /**
+     * Pseudo-translation of a text into a language: its vowels are accented,
+     * and it is enclosed by the code of the language.
+     * 
+     * @param text     to translate
+     * @param language target language
+     * @return pseudo-translation
+     */
+    public static String translate(String text, String language) {
+	String code = language.substring(0, Math.min(2, language.length()))
+		.toLowerCase();
+	StringBuilder sb = new StringBuilder("[").append(code).append("] ");
+	for (char c : text.toCharArray()) {
+	    int i = "aeiouAEIOU".indexOf(c);
+	    sb.append(i < 0 ? c : "àéíóúÀÉÍÓÚ".charAt(i));
+	}
+	return sb.toString();
+    }
+
+    /*
+     * ######################## AUXILIARY METHODS ##############################
+     */
+
+    private void handle(HttpExchange exchange) throws IOException {
+	long start = System.nanoTime();
+	requests.incrementAndGet();
+	try (InputStream is = exchange.getRequestBody()) {
+	    JsonNode request = MAPPER.readTree(is);
+	    String prompt = request.path("messages").path(0).path("content")
+		    .asText();
+	    boolean stream = request.path("stream").asBoolean(false);
+	    String answer = getAnswer(prompt, getProperties(prompt));
+	    int tokens = TokenCounter.count(answer);
+
+	    double r;
+	    boolean drop;
+	    long latency;
+	    synchronized (random) {
+		r = random.nextDouble();
+		drop = random.nextDouble() < dropRate;
+		latency = (long) (median * Math.exp(spread * random.nextGaussian())
+			+ perToken * tokens);
+	    }
+
+	    if (r < errorRate) {
+		errors.incrementAndGet();
+		sleep(latency / 2);
+		sendError(exchange, 500, "server_error", null, "Stub error");
+	    } else if (r < errorRate + rateLimitRate) {
+		rateLimits.incrementAndGet();
+		exchange.getResponseHeaders().set("retry-after-ms",
+			String.valueOf(retryAfter));
+		sendError(exchange, 429, "requests", "rate_limit_exceeded",
+			"Stub rate limit");
+	    } else {
+		promptTokens.addAndGet(TokenCounter.count(prompt));
+		answerTokens.addAndGet(tokens);
+		if (stream) {
+		    if (drop) {
+			errors.incrementAndGet();
+		    }
+		    sendStream(exchange, answer, latency, drop);
+		} else {
+		    sleep(latency);
+		    sendCompletion(exchange, request, answer);
+		}
+	    }
+	} catch (RuntimeException e) {
+	    sendError(exchange, 400, "invalid_request_error", null,
+		    String.valueOf(e.getMessage()));
+	} finally {
+	    latencies.add((System.nanoTime() - start) / 1_000_000);
+	    exchange.close();
+	}
+    }
+
+    /*
+     * Properties (key, value) of a prompt: lines key=value, or JSON objects.
+     */
+    private List<String[]> getProperties(String prompt) throws IOException {
+	List<String[]> properties = new ArrayList<>();
+	for (String line : prompt.split("\n")) {
+	    line = line.trim();
+	    if (line.startsWith("{\"key\"")) {
+		JsonNode node = MAPPER.readTree(line);
+		properties.add(new String[] { node.path("key").asText(),
+			node.path("value").asText() });
+	    } else if (line.contains("=") && !line.contains(" => ")) {
+		String[] kv = line.split("=", 2);
+		properties.add(kv);
+	    }
+	}
+	return properties;
+    }
+
+    /*
+     * Answer to a prompt, in its requested format and languages.
+     */
+    private String getAnswer(String prompt, List<String[]> properties)
+	    throws IOException {
+	boolean json = prompt.contains("JSON array");
+	List<String> languages;
+	Matcher multi = MULTI.matcher(prompt);
+	Matcher single = SINGLE.matcher(prompt);
+	if (multi.find()) {
+	    languages = Arrays.asList(multi.group(1).split(", "));
+	} else if (single.find()) {
+	    languages = Collections.singletonList(single.group(1));
+	} else {
+	    languages = Collections.singletonList("Unknown");
+	}
+
+	if (json) {
+	    ArrayNode array = MAPPER.createArrayNode();
+	    for (String language : languages) {
+		for (String[] p : properties) {
+		    ObjectNode node = array.addObject();
+		    if (languages.size() > 1) {
+			node.put("language", language);
+		    }
+		    node.put("key", p[0]).put("value", translate(p[1], language));
+		}
+	    }
+	    return MAPPER.writerWithDefaultPrettyPrinter()
+		    .writeValueAsString(array);
+	}
+
+	StringBuilder sb = new StringBuilder();
+	for (String language : languages) {
+	    if (languages.size() > 1) {
+		sb.append(OpenAIApiRequestBuilder.SECTION).append(language)
+			.append("\n");
+	    }
+	    for (String[] p : properties) {
+		sb.append(p[0]).append("=").append(translate(p[1], language))
+			.append("\n");
+	    }
+	}
+	return sb.toString();
+    }
+
+    private void sendCompletion(HttpExchange exchange, JsonNode request,
+	    String answer) throws IOException {
+	ObjectNode completion = MAPPER.createObjectNode();
+	completion.put("id", "chatcmpl-stub").put("object", "chat.completion")
+		.put("created", System.currentTimeMillis() / 1000)
+		.put("model", request.path("model").asText());
+	ObjectNode choice = completion.putArray("choices").addObject();
+	choice.put("index", 0).put("finish_reason", "stop");
+	choice.putObject("message").put("role", "assistant").put("content",
+		answer);
+	int tokens = TokenCounter.count(answer);
+	completion.putObject("usage").put("prompt_tokens", 0)
+		.put("completion_tokens", tokens).put("total_tokens", tokens);
+	send(exchange, 200, "application/json",
+		MAPPER.writeValueAsBytes(completion));
+    }
+
+    /*
+     * Streams an answer in chunks of a few chars (as if tokens), spread over
+     * its latency. If dropped, it is broken halfway.
+     */
+    private void sendStream(HttpExchange exchange, String answer,
+	    long latency, boolean drop) throws IOException {
+	exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+	exchange.sendResponseHeaders(200, 0);
+	int chunks = Math.max(1, (answer.length() + 3) / 4);
+	long firstToken = latency / 4;
+	sleep(firstToken);
+	try (OutputStream os = exchange.getResponseBody()) {
+	    for (int i = 0; i < answer.length(); i += 4) {
+		if (drop && i >= answer.length() / 2) {
+		    os.write("broken\n\n".getBytes(StandardCharsets.UTF_8));
+		    return;
+		}
+		ObjectNode chunk = MAPPER.createObjectNode();
+		chunk.put("id", "chatcmpl-stub").put("object",
+			"chat.completion.chunk");
+		ObjectNode choice = chunk.putArray("choices").addObject();
+		choice.put("index", 0);
+		choice.putObject("delta").put("content",
+			answer.substring(i, Math.min(answer.length(), i + 4)));
+		os.write(("data: " + MAPPER.writeValueAsString(chunk) + "\n\n")
+			.getBytes(StandardCharsets.UTF_8));
+		os.flush();
+		sleep((latency - firstToken) / chunks);
+	    }
+	    os.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+	}
+    }
+
+    private void sendError(HttpExchange exchange, int status, String type,
+	    String code, String message) throws IOException {
+	ObjectNode error = MAPPER.createObjectNode();
+	error.putObject("error").put("message", message).put("type", type)
+		.put("code", code);
+	send(exchange, status, "application/json",
+		MAPPER.writeValueAsBytes(error));
+    }
+
+    private void send(HttpExchange exchange, int status, String type,
+	    byte[] body) throws IOException {
+	exchange.getResponseHeaders().set("Content-Type", type);
+	exchange.sendResponseHeaders(status, body.length);
+	try (OutputStream os = exchange.getResponseBody()) {
+	    os.write(body);
+	}
+    }
+
+    private static void sleep(long millis) {
+	try {
+	    Thread.sleep(Math.max(0, millis));
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	}
+    }
+
+}
@@ -0,0 +1,161 @@
+package main.java.logic.translation.api.openai;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+
+/**
+ * Counts, offline, the number of tokens a text is split into by the BPE
+ * tokenizer of OpenAI chat models (cl100k_base), with that very encoding
+ * (JTokkit, already a dependency of the OpenAI client): the count is exact.
+ * 
+ * Only if the encoding cannot be loaded, the count is estimated instead (see
+ * estimate), which tends to be higher than the real one.
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public class TokenCounter {
+
+    private final static Logger LOGGER = Logger
+	    .getLogger(TokenCounter.class.getName());
+
+    // BPE encoding of the models (null if it could not be loaded)
+    private final static Encoding ENCODING = load();
+
+    // Average length (in chars or UTF-8 bytes) of a token, per kind of piece
+    private final static int CHARS_PER_WORD_TOKEN = 5;
+    private final static int DIGITS_PER_TOKEN = 3;
+    private final static int CHARS_PER_SYMBOL_TOKEN = 2;
+    private final static int BYTES_PER_TOKEN = 3;
+
+    /**
+     * @param text to count the tokens of
+     * @return number of tokens of the text (estimated, if the encoding could
+     *         not be loaded)
+     */
+    public static int count(String text) {
+	if (ENCODING == null) {
+	    return estimate(text);
+	}
+	// Special tokens (i.e. <|endoftext|>) are counted as plain text
+	return ENCODING.countTokensOrdinary(text);
+    }
+
+    /**
+     * @return whether counts are exact (i.e. the encoding could be loaded)
+     */
+    public static boolean isExact() {
+	return ENCODING != null;
+    }
+
+    /**
+     * Estimates the number of tokens of a text, without its encoding.
+     * 
+     * Texts are first split the same way the tokenizer does before merging
+     * bytes: into words (with their leading space), numbers (of up to 3
+     * digits), runs of punctuation and runs of white spaces. Then, the tokens
+     * of each piece are estimated from its length: common words are a single
+     * token, whereas longer ones and non-ASCII texts are split into several.
+     * It is only an estimate, which tends to be higher than the real count, so
+     * that requests built upon it do not exceed their limits.
+     * 
+     * @param text to count the tokens of
+     * @return estimated number of tokens of the text
+     */
+    public static int estimate(String text) {
+	int tokens = 0;
+	int n = text.length();
+	int i = 0;
+
+	while (i < n) {
+	    char c = text.charAt(i);
+	    int start = i;
+
+	    if (c == ' ' && i + 1 < n && !isSpace(text.charAt(i + 1))) {
+		i++; // A leading space belongs to the next piece
+		c = text.charAt(i);
+	    }
+
+	    if (Character.isLetter(c) || c == '\'') {
+		boolean ascii = true;
+		while (i < n && (Character.isLetter(text.charAt(i))
+			|| text.charAt(i) == '\'')) {
+		    ascii &= text.charAt(i) < 0x80;
+		    i++;
+		}
+		tokens += ascii ? ceil(i - start, CHARS_PER_WORD_TOKEN)
+			: ceil(utf8Length(text, start, i), BYTES_PER_TOKEN);
+	    } else if (Character.isDigit(c)) {
+		while (i < n && Character.isDigit(text.charAt(i))) {
+		    i++;
+		}
+		// Numbers do not take their leading space
+		int space = text.charAt(start) == ' ' ? 1 : 0;
+		tokens += ceil(i - start - space, DIGITS_PER_TOKEN) + space;
+	    } else if (isSpace(c)) {
+		while (i < n && isSpace(text.charAt(i))) {
+		    i++;
+		}
+		tokens++;
+	    } else {
+		while (i < n && !isSpace(text.charAt(i))
+			&& !Character.isLetterOrDigit(text.charAt(i))) {
+		    i++;
+		}
+		tokens += c < 0x80 ? ceil(i - start, CHARS_PER_SYMBOL_TOKEN)
+			: ceil(utf8Length(text, start, i), BYTES_PER_TOKEN);
+	    }
+	}
+	return tokens;
+    }
+
+    /*
+     * ######################## AUXILIARY METHODS ##############################
+     */
+
+    private static Encoding load() {
+	try {
+	    return Encodings.newLazyEncodingRegistry()
+		    .getEncoding(EncodingType.CL100K_BASE);
+	} catch (RuntimeException | LinkageError e) {
+	    LOGGER.log(Level.WARNING,
+		    "Token encoding not available, counts are estimated: {0}",
+		    e.toString());
+	    return null;
+	}
+    }
+
+    private static boolean isSpace(char c) {
+	return Character.isWhitespace(c);
+    }
+
+    private static int ceil(int length, int perToken) {
+	return (length + perToken - 1) / perToken;
+    }
+
+    /*
+     * Number of bytes of a piece of text, encoded in UTF-8.
+     */
+    private static int utf8Length(String text, int start, int end) {
+	int bytes = 0;
+	for (int i = start; i < end; i++) {
+	    char c = text.charAt(i);
+	    if (c < 0x80) {
+		bytes++;
+	    } else if (c < 0x800) {
+		bytes += 2;
+	    } else if (Character.isHighSurrogate(c)) {
+		bytes += 4;
+		i++;
+	    } else {
+		bytes += 3;
+	    }
+	}
+	return bytes;
+    }
+
+}
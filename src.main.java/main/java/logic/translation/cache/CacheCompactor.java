@@ -0,0 +1,395 @@
+package main.java.logic.translation.cache;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Background job that keeps the translation cache database within its bounds,
+ * without blocking lookups: it works on its own connection and in short
+ * transactions, a batch of records at a time.
+ * 
+ * Periodically, it:
+ * 
+ * - 1. Writes the last time each recently used translation was hit (hits are
+ * only recorded in memory while matching, and written here in batches).
+ * 
+ * - 2. Evicts those translations that have not been used for longer than the
+ * max. age.
+ * 
+ * - 3. Evicts the least recently used translations while the cache holds more
+ * than its max. number of entries.
+ * 
+ * - 4. Returns the freed pages to the file system (incremental vacuum).
+ * 
+ * Each batch of evicted translations is notified to the listeners of the
+ * compactor (i.e. the in-memory tiers of the cache), so that they do not keep
+ * them any longer. There is a single compactor per database.
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public class CacheCompactor {
+
+    private final static Map<String, CacheCompactor> compactors = new HashMap<>();
+
+    // Queries
+    private final static String HIT = "UPDATE translation_cache SET last_hit_at=?"
+	    + " WHERE text_hash=? and language_code=? and last_hit_at<?";
+    private final static String EVICT_EXPIRED = "DELETE FROM translation_cache WHERE (text_hash, language_code) IN "
+	    + "(SELECT text_hash, language_code FROM translation_cache WHERE last_hit_at<? LIMIT ?)"
+	    + " RETURNING text_hash as hash, language_code as language";
+    private final static String EVICT_OLDEST = "DELETE FROM translation_cache WHERE (text_hash, language_code) IN "
+	    + "(SELECT text_hash, language_code FROM translation_cache ORDER BY last_hit_at LIMIT ?)"
+	    + " RETURNING text_hash as hash, language_code as language";
+    private final static String REMAINING = "SELECT 1 FROM translation_cache WHERE text_hash=? LIMIT 1";
+    private final static String COUNT = "SELECT COUNT(*) as size FROM translation_cache";
+    private final static String VACUUM = "PRAGMA incremental_vacuum(%d)";
+
+    private final String url;
+    private final ScheduledExecutorService scheduler;
+    private Connection connection;
+
+    // Settings
+    private final long maxEntries; // 0: unbounded
+    private final long maxAge; // millis, 0: unbounded
+    private final int batchSize;
+
+    // Hits pending to be written: key + language code -> time of last hit
+    private final Map<Hit, Long> hits = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushing = new AtomicBoolean(false);
+
+    // Notified of evictions (only while they are in use elsewhere)
+    private final Set<EvictionListener> listeners = Collections
+	    .synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    private CacheCompactor(String url, long maxEntries, long maxAge,
+	    int batchSize, long interval) {
+	this.url = url;
+	this.maxEntries = maxEntries;
+	this.maxAge = maxAge;
+	this.batchSize = batchSize;
+
+	this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+	    Thread t = new Thread(r, "cache-compactor");
+	    t.setDaemon(true);
+	    t.setPriority(Thread.MIN_PRIORITY);
+	    return t;
+	});
+	if (interval > 0) {
+	    scheduler.scheduleWithFixedDelay(this::compact, interval, interval,
+		    TimeUnit.SECONDS);
+	}
+    }
+
+    /**
+     * Retrieves the compactor of a database, starting it if it did not exist.
+     * 
+     * @param url        JDBC url of the cache database
+     * @param maxEntries max. number of translations in the cache (0: no max.)
+     * @param maxAge     max. time (millis) a translation can go without being
+     *                   used before being evicted (0: no max.)
+     * @param batchSize  max. number of records written/evicted per transaction
+     * @param interval   seconds between compactions (0: only on request)
+     * @return compactor of the database
+     */
+    public static synchronized CacheCompactor get(String url, long maxEntries,
+	    long maxAge, int batchSize, long interval) {
+	CacheCompactor compactor = compactors.get(url);
+	if (compactor == null) {
+	    compactor = new CacheCompactor(url, maxEntries, maxAge, batchSize,
+		    interval);
+	    compactors.put(url, compactor);
+	}
+	return compactor;
+    }
+
+    /**
+     * Stops all compactors, writing their pending hits beforehand.
+     */
+    public static synchronized void shutdownAll() {
+	for (CacheCompactor c : compactors.values()) {
+	    c.shutdown();
+	}
+	compactors.clear();
+    }
+
+    /**
+     * Records, in memory, that a translation has just been used. It is written
+     * to the database in the next compaction.
+     * 
+     * @param key      key of the original text
+     * @param language code of the language of the translation
+     */
+    public void hit(TextKey key, String language) {
+	hits.put(new Hit(key, language), System.currentTimeMillis());
+	if (hits.size() >= batchSize && flushing.compareAndSet(false, true)) {
+	    // Write them soon, in the background
+	    submit(() -> {
+		flushing.set(false);
+		flush();
+	    });
+	}
+    }
+
+    /**
+     * Adds a listener to be notified of the translations evicted from now on.
+     * It is only referenced weakly: it is notified for as long as it is in use
+     * elsewhere.
+     * 
+     * @param listener listener of evictions
+     */
+    public void addListener(EvictionListener listener) {
+	listeners.add(listener);
+    }
+
+    /**
+     * Requests a compaction, to be carried out in the background.
+     */
+    public void request() {
+	submit(this::compact);
+    }
+
+    /**
+     * Stops this compactor, writing its pending hits beforehand.
+     */
+    public void shutdown() {
+	submit(this::flush);
+	scheduler.shutdown();
+	try {
+	    scheduler.awaitTermination(5, TimeUnit.SECONDS);
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	}
+	close();
+    }
+
+    /*
+     * ######################## AUXILIARY METHODS ##############################
+     */
+
+    private void submit(Runnable task) {
+	try {
+	    scheduler.execute(task);
+	} catch (RejectedExecutionException e) {
+	    // Already stopped
+	}
+    }
+
+    /*
+     * Carries out a full compaction. Any error stops it until the next one.
+     */
+    private void compact() {
+	try {
+	    flush();
+	    int evicted = 0;
+	    if (maxAge > 0) {
+		evicted += evictExpired(System.currentTimeMillis() - maxAge);
+	    }
+	    if (maxEntries > 0) {
+		evicted += evictOldest();
+	    }
+	    if (evicted > 0) {
+		vacuum();
+	    }
+	} catch (SQLException e) {
+	    close(); // Reconnect next time
+	}
+    }
+
+    /*
+     * Writes all pending hits, a batch per transaction.
+     */
+    private void flush() {
+	if (hits.isEmpty()) {
+	    return;
+	}
+
+	try {
+	    Connection c = getConnection();
+	    try (PreparedStatement stmnt = c.prepareStatement(HIT)) {
+		Iterator<Map.Entry<Hit, Long>> it = hits.entrySet().iterator();
+		while (it.hasNext()) {
+		    int pending = 0;
+		    c.setAutoCommit(false);
+		    while (it.hasNext() && pending < batchSize) {
+			Map.Entry<Hit, Long> hit = it.next();
+			it.remove();
+			stmnt.setLong(1, hit.getValue());
+			stmnt.setBytes(2, hit.getKey().key.getBytes());
+			stmnt.setString(3, hit.getKey().language);
+			stmnt.setLong(4, hit.getValue());
+			stmnt.addBatch();
+			pending++;
+		    }
+		    stmnt.executeBatch();
+		    c.commit();
+		    c.setAutoCommit(true);
+		}
+	    }
+	} catch (SQLException e) {
+	    // Hits are lost: just a hint for eviction
+	    close();
+	}
+    }
+
+    private int evictExpired(long oldest) throws SQLException {
+	int evicted = 0;
+	int deleted;
+	try (PreparedStatement stmnt = getConnection()
+		.prepareStatement(EVICT_EXPIRED)) {
+	    do {
+		stmnt.setLong(1, oldest);
+		stmnt.setInt(2, batchSize);
+		deleted = evict(stmnt);
+		evicted += deleted;
+	    } while (deleted == batchSize);
+	}
+	return evicted;
+    }
+
+    private int evictOldest() throws SQLException {
+	long excess = size() - maxEntries;
+	int evicted = 0;
+	try (PreparedStatement stmnt = getConnection()
+		.prepareStatement(EVICT_OLDEST)) {
+	    while (excess > 0) {
+		stmnt.setLong(1, Math.min(batchSize, excess));
+		int deleted = evict(stmnt);
+		if (deleted == 0) {
+		    break;
+		}
+		excess -= deleted;
+		evicted += deleted;
+	    }
+	}
+	return evicted;
+    }
+
+    /*
+     * Evicts a batch of translations, and notifies the listeners of each of
+     * them. Returns the number of them evicted.
+     */
+    private int evict(PreparedStatement stmnt) throws SQLException {
+	List<Hit> evicted = new ArrayList<>();
+	try (ResultSet rs = stmnt.executeQuery()) {
+	    while (rs.next()) {
+		evicted.add(new Hit(new TextKey(rs.getBytes("hash")),
+			rs.getString("language")));
+	    }
+	}
+	if (evicted.isEmpty()) {
+	    return 0;
+	}
+
+	List<EvictionListener> notified;
+	synchronized (listeners) {
+	    notified = new ArrayList<>(listeners);
+	}
+	if (!notified.isEmpty()) {
+	    try (PreparedStatement remaining = getConnection()
+		    .prepareStatement(REMAINING)) {
+		for (Hit e : evicted) {
+		    boolean last = !remains(remaining, e.key);
+		    for (EvictionListener l : notified) {
+			l.evicted(e.key, e.language, last);
+		    }
+		}
+	    }
+	}
+	return evicted.size();
+    }
+
+    /*
+     * Whether any translation of a text is left in the database.
+     */
+    private boolean remains(PreparedStatement stmnt, TextKey key)
+	    throws SQLException {
+	stmnt.setBytes(1, key.getBytes());
+	try (ResultSet rs = stmnt.executeQuery()) {
+	    return rs.next();
+	}
+    }
+
+    private long size() throws SQLException {
+	try (Statement stmt = getConnection().createStatement();
+		ResultSet rs = stmt.executeQuery(COUNT)) {
+	    return rs.next() ? rs.getLong("size") : 0;
+	}
+    }
+
+    private void vacuum() throws SQLException {
+	try (Statement stmt = getConnection().createStatement()) {
+	    stmt.execute(String.format(VACUUM, batchSize));
+	}
+    }
+
+    private Connection getConnection() throws SQLException {
+	if (connection == null || connection.isClosed()) {
+	    connection = DriverManager.getConnection(url);
+	    try (Statement stmt = connection.createStatement()) {
+		// Wait for the writer, rather than failing
+		stmt.execute("PRAGMA busy_timeout=5000");
+	    }
+	}
+	return connection;
+    }
+
+    private void close() {
+	try {
+	    if (connection != null && !connection.isClosed()) {
+		connection.close();
+	    }
+	} catch (SQLException e) {
+	    return;
+	} finally {
+	    connection = null;
+	}
+    }
+
+    /*
+     * Key of a text + language code.
+     */
+    private static class Hit {
+
+	private final TextKey key;
+	private final String language;
+
+	private Hit(TextKey key, String language) {
+	    this.key = key;
+	    this.language = language;
+	}
+
+	@Override
+	public int hashCode() {
+	    return 31 * key.hashCode() + language.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+	    if (!(obj instanceof Hit)) {
+		return false;
+	    }
+	    Hit other = (Hit) obj;
+	    return key.equals(other.key) && language.equals(other.language);
+	}
+    }
+
+}
@@ -0,0 +1,82 @@
+package main.java.logic.translation.cache;
+
+import main.java.util.resources.TextUtil;
+
+/**
+ * Record of the translation cache: the translation of a text (identified by
+ * its key) into a given language.
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public class CacheEntry {
+
+    private final TextKey key;
+    private final String language;
+    private final String translation;
+    private final String source; // Normalized original text, if kept
+
+    /**
+     * @param key         key of the original text
+     * @param language    code of the language of the translation (i.e. en-US,
+     *                    en_us...)
+     * @param translation translated text
+     */
+    public CacheEntry(TextKey key, String language, String translation) {
+	this(key, language, translation, null);
+    }
+
+    /**
+     * @param key         key of the original text
+     * @param language    code of the language of the translation (i.e. en-US,
+     *                    en_us...)
+     * @param translation translated text
+     * @param source      original text (null if not to be kept)
+     */
+    public CacheEntry(TextKey key, String language, String translation,
+	    String source) {
+	this.key = key;
+	this.language = code(language);
+	this.translation = translation;
+	this.source = source == null ? null
+		: TextUtil.normalize(source);
+    }
+
+    /**
+     * @param language code of a language (i.e. en-US, en_us...)
+     * @return language code, as stored in the database (i.e. en_us)
+     */
+    public static String code(String language) {
+	return language.toLowerCase().replace("-", "_");
+    }
+
+    /**
+     * @return key of the original text
+     */
+    public TextKey getKey() {
+	return key;
+    }
+
+    /**
+     * @return code of the language of the translation, as stored in the
+     *         database
+     */
+    public String getLanguage() {
+	return language;
+    }
+
+    /**
+     * @return translated text
+     */
+    public String getTranslation() {
+	return translation;
+    }
+
+    /**
+     * @return normalized original text (null if not kept)
+     */
+    public String getSource() {
+	return source;
+    }
+
+}
@@ -0,0 +1,74 @@
+package main.java.logic.translation.cache;
+
+import java.util.Properties;
+
+/**
+ * Result of matching a set of properties against the translation cache: those
+ * whose translation was found in it, and those yet to be translated.
+ * 
+ * Each lookup gets its own result, so that several of them (i.e. into
+ * different languages) can be carried out at the same time.
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public class CacheMatch {
+
+    private final Properties translated;
+    private final Properties untranslated;
+    private final Properties references;
+
+    /**
+     * @param translated   properties found in the cache, already translated
+     * @param untranslated properties not found in the cache, in their original
+     *                     language
+     */
+    public CacheMatch(Properties translated, Properties untranslated) {
+	this(translated, untranslated, new Properties());
+    }
+
+    /**
+     * @param translated   properties found in the cache, already translated
+     * @param untranslated properties not found in the cache, in their original
+     *                     language
+     * @param references   past translations of texts similar to those not
+     *                     found (original text -> translation)
+     */
+    public CacheMatch(Properties translated, Properties untranslated,
+	    Properties references) {
+	this.translated = translated;
+	this.untranslated = untranslated;
+	this.references = references;
+    }
+
+    /**
+     * @return set of properties (in the target language) found in the cache
+     */
+    public Properties getTranslated() {
+	return translated;
+    }
+
+    /**
+     * @return set of properties (in their original language) not found in the
+     *         cache, and thus yet to be translated
+     */
+    public Properties getUntranslated() {
+	return untranslated;
+    }
+
+    /**
+     * @return past translations of texts similar to those not found in the
+     *         cache (original text -> translation), to be used as reference
+     */
+    public Properties getReferences() {
+	return references;
+    }
+
+    /**
+     * @return boolean true if all properties were found in the cache
+     */
+    public boolean isComplete() {
+	return untranslated.isEmpty();
+    }
+
+}
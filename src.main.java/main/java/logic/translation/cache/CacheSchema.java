@@ -0,0 +1,166 @@
+package main.java.logic.translation.cache;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Schema of the translation cache database, which is versioned so that an
+ * already existing cache (and all of its past translations) survives across
+ * executions of the program and across changes of its structure.
+ * 
+ * The current version is kept in its own table, and any older database is
+ * brought up to date by applying, in order, all of the forward migrations it
+ * is missing. Rebuilding the database (VACUUM) cannot be done within a
+ * transaction: it is done once its migration is committed, and only attempted
+ * once (if it fails, i.e. the database is in use, it is left as it is).
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public class CacheSchema {
+
+    // Version table
+    private final static String CREATE_VERSION = "CREATE TABLE IF NOT EXISTS schema_version ("
+	    + "version INTEGER NOT NULL)";
+    private final static String GET_VERSION = "SELECT MAX(version) as version FROM schema_version";
+    private final static String SET_VERSION = "INSERT INTO schema_version (version) VALUES (?)";
+    private final static String DROP_VERSION = "DROP TABLE IF EXISTS schema_version";
+
+    private final static String VACUUM = "VACUUM";
+
+    // Migrations: MIGRATIONS[i] brings the schema from version i to i+1
+    private final static String[][] MIGRATIONS = {
+	    // 1. Translation cache table (hash of text + language as PK)
+	    { "CREATE TABLE IF NOT EXISTS translation_cache ("
+		    + "text_hash TEXT NOT NULL, " + "text_translation TEXT, "
+		    + "created_at TIMESTAMP, "
+		    + "language_code TEXT NOT NULL, "
+		    + "PRIMARY KEY (text_hash, language_code))" },
+
+	    // 2. Compact keys: 128-bit BLOB instead of 512-bit hexadecimal TEXT
+	    // (keeps the first 128 bits of every existing hash)
+	    { "CREATE TABLE translation_cache_v2 ("
+		    + "text_hash BLOB NOT NULL, " + "text_translation TEXT, "
+		    + "created_at TIMESTAMP, "
+		    + "language_code TEXT NOT NULL, "
+		    + "PRIMARY KEY (text_hash, language_code)) WITHOUT ROWID",
+		    "INSERT OR IGNORE INTO translation_cache_v2 "
+			    + "SELECT unhex(substr(text_hash, 1, 32)), text_translation, "
+			    + "created_at, language_code FROM translation_cache "
+			    + "WHERE length(text_hash) = 128",
+		    "DROP TABLE translation_cache",
+		    "ALTER TABLE translation_cache_v2 RENAME TO translation_cache" },
+
+	    // 3. Last time each translation was used (for eviction)
+	    { "ALTER TABLE translation_cache ADD COLUMN last_hit_at INTEGER",
+		    "UPDATE translation_cache SET last_hit_at = COALESCE(created_at, 0)",
+		    "CREATE INDEX IF NOT EXISTS translation_cache_last_hit "
+			    + "ON translation_cache (last_hit_at)" },
+
+	    // 4. Normalized original text (for the translation memory)
+	    { "ALTER TABLE translation_cache ADD COLUMN source_text TEXT" },
+
+	    // 5. Space freed by evictions is returned incrementally (see
+	    // CacheCompactor), which requires rebuilding the database
+	    { "PRAGMA auto_vacuum=INCREMENTAL", VACUUM } };
+
+    private final static String DROP = "DROP TABLE IF EXISTS translation_cache";
+
+    /**
+     * @return latest version of the schema
+     */
+    public static int getLatestVersion() {
+	return MIGRATIONS.length;
+    }
+
+    /**
+     * Retrieves the version of the schema a given database is in.
+     * 
+     * @param c connection to the database
+     * @return version of its schema (0 if it has never been created)
+     * @throws SQLException in case of issues accessing the database
+     */
+    public static int getVersion(Connection c) throws SQLException {
+	try (Statement stmt = c.createStatement()) {
+	    stmt.executeUpdate(CREATE_VERSION);
+	    try (ResultSet rs = stmt.executeQuery(GET_VERSION)) {
+		return rs.next() ? rs.getInt("version") : 0;
+	    }
+	}
+    }
+
+    /**
+     * Upgrades the schema of a given database to its latest version, applying
+     * every missing migration in its own transaction.
+     * 
+     * @param c connection to the database
+     * @return version the database was in, before migrating
+     * @throws SQLException in case any migration could not be applied (those
+     *                      already applied are kept)
+     */
+    public static int migrate(Connection c) throws SQLException {
+	int version = getVersion(c);
+	boolean autoCommit = c.getAutoCommit();
+
+	try {
+	    for (int v = version; v < MIGRATIONS.length; v++) {
+		boolean vacuum = false;
+		c.setAutoCommit(false);
+		try (Statement stmt = c.createStatement();
+			PreparedStatement stmnt = c
+				.prepareStatement(SET_VERSION)) {
+		    for (String sql : MIGRATIONS[v]) {
+			if (VACUUM.equals(sql)) {
+			    vacuum = true;
+			} else {
+			    stmt.executeUpdate(sql);
+			}
+		    }
+		    stmnt.setInt(1, v + 1);
+		    stmnt.executeUpdate();
+		    c.commit();
+		} catch (SQLException e) {
+		    c.rollback();
+		    throw e;
+		}
+		if (vacuum) {
+		    vacuum(c);
+		}
+	    }
+	} finally {
+	    c.setAutoCommit(autoCommit);
+	}
+
+	return version;
+    }
+
+    /*
+     * Rebuilds a database (out of any transaction), if possible.
+     */
+    private static void vacuum(Connection c) throws SQLException {
+	c.setAutoCommit(true);
+	try (Statement stmt = c.createStatement()) {
+	    stmt.execute(VACUUM);
+	} catch (SQLException e) {
+	    // Left as it is
+	}
+    }
+
+    /**
+     * Drops every table of the cache, so that it is built from scratch in the
+     * next migration.
+     * 
+     * @param c connection to the database
+     * @throws SQLException in case of issues accessing the database
+     */
+    public static void drop(Connection c) throws SQLException {
+	try (Statement stmt = c.createStatement()) {
+	    stmt.executeUpdate(DROP);
+	    stmt.executeUpdate(DROP_VERSION);
+	}
+    }
+
+}
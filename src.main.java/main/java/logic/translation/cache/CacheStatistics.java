@@ -0,0 +1,98 @@
+package main.java.logic.translation.cache;
+
+/**
+ * Snapshot of the usage statistics of the in-memory tier of the translation
+ * cache: how many lookups were answered from memory (hits) or had to go to the
+ * database (misses), how many translations were evicted and how much time was
+ * spent loading them from the database.
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public class CacheStatistics {
+
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long loads;
+    private final long loadTime;
+    private final int size;
+    private final long bytes;
+
+    public CacheStatistics(long hits, long misses, long evictions, long loads,
+	    long loadTime, int size, long bytes) {
+	this.hits = hits;
+	this.misses = misses;
+	this.evictions = evictions;
+	this.loads = loads;
+	this.loadTime = loadTime;
+	this.size = size;
+	this.bytes = bytes;
+    }
+
+    /**
+     * @return number of lookups answered from memory
+     */
+    public long getHits() {
+	return hits;
+    }
+
+    /**
+     * @return number of lookups not found in memory
+     */
+    public long getMisses() {
+	return misses;
+    }
+
+    /**
+     * @return ratio of lookups answered from memory (0 if none were made)
+     */
+    public double getHitRate() {
+	long total = hits + misses;
+	return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * @return number of translations evicted from memory
+     */
+    public long getEvictions() {
+	return evictions;
+    }
+
+    /**
+     * @return number of (bulk) loads from the database
+     */
+    public long getLoads() {
+	return loads;
+    }
+
+    /**
+     * @return total time spent loading from the database, in nanoseconds
+     */
+    public long getLoadTime() {
+	return loadTime;
+    }
+
+    /**
+     * @return number of translations currently kept in memory
+     */
+    public int getSize() {
+	return size;
+    }
+
+    /**
+     * @return estimated size in bytes of the translations kept in memory
+     */
+    public long getBytes() {
+	return bytes;
+    }
+
+    @Override
+    public String toString() {
+	return String.format(
+		"hits=%d, misses=%d (hit rate %.1f%%), evictions=%d, loads=%d (%.1f ms), size=%d (%d bytes)",
+		hits, misses, getHitRate() * 100, evictions, loads,
+		loadTime / 1e6, size, bytes);
+    }
+
+}
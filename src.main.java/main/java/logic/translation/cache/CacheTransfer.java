@@ -0,0 +1,633 @@
+package main.java.logic.translation.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import main.java.util.resources.HashUtil;
+
+/**
+ * Bulk import/export of the translation cache, either as TMX (translation
+ * memory exchange) or as TSV (tab-separated values) files.
+ * 
+ * Files are processed as streams (StAX for TMX, line by line for TSV), so that
+ * memory usage does not depend on their size, and imported translations are
+ * inserted in batches, each in its own transaction.
+ * 
+ * The cache does not keep original texts, only their keys. Therefore:
+ * 
+ * - TMX files are imported taking the segment in the source language (srclang
+ * attribute of the unit or the header) as original text, which is also kept
+ * for the translation memory; if there is none, the tuid of the unit is used
+ * as key. Exported TMX files contain one unit per
+ * original text, with its key as tuid and no segment in the source language.
+ * 
+ * - TSV files hold a translation per line: key (or original text), language
+ * code and translation. Their header line tells which of them is used, either
+ * "text_hash" or "source". Tabs, line breaks and backslashes are escaped.
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public class CacheTransfer {
+
+    public final static int DEFAULT_BATCH_SIZE = 1000;
+
+    // TMX
+    private final static String TMX_VERSION = "1.4";
+    private final static String XML_NS = "http://www.w3.org/XML/1998/namespace";
+    private final static String ALL_LANGUAGES = "*all*";
+
+    // TSV
+    private final static String TSV_KEY = "text_hash";
+    private final static String TSV_SOURCE = "source";
+    private final static String TSV_HEADER = TSV_KEY
+	    + "\tlanguage_code\ttranslation";
+
+    private final TranslationCache cache;
+    private final int batchSize;
+    private TransferListener listener;
+
+    // Progress of the current transfer
+    private long segments;
+    private long translations;
+    private long skipped;
+    private long start;
+
+    /**
+     * @param cache translation cache to import to/export from
+     */
+    public CacheTransfer(TranslationCache cache) {
+	this(cache, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param cache     translation cache to import to/export from
+     * @param batchSize number of translations inserted per transaction (and
+     *                  between progress notifications)
+     */
+    public CacheTransfer(TranslationCache cache, int batchSize) {
+	this.cache = cache;
+	this.batchSize = batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+    }
+
+    /**
+     * @param listener to be notified of the progress of transfers, after each
+     *                 batch
+     */
+    public void setListener(TransferListener listener) {
+	this.listener = listener;
+    }
+
+    /*
+     * ############################# TMX ######################################
+     */
+
+    /**
+     * Imports all translations of a TMX file into the cache.
+     * 
+     * @param path of the TMX file
+     * @return report of the import
+     * @throws IOException if the file cannot be read or is not valid TMX
+     */
+    public TransferReport importTmx(Path path) throws IOException {
+	try (InputStream in = Files.newInputStream(path)) {
+	    return importTmx(in);
+	}
+    }
+
+    /**
+     * Imports all translations of a TMX document into the cache.
+     * 
+     * @param in stream with the TMX document
+     * @return report of the import
+     * @throws IOException if the document cannot be read or is not valid TMX
+     */
+    public TransferReport importTmx(InputStream in) throws IOException {
+	begin();
+	List<CacheEntry> batch = new ArrayList<>(batchSize);
+	XMLStreamReader reader = null;
+	try {
+	    reader = getInputFactory().createXMLStreamReader(in);
+
+	    String srclang = null; // Of the header
+	    TmxUnit unit = null;
+	    String lang = null; // Of the current tuv
+	    StringBuilder seg = null;
+	    int codes = 0; // Depth of inline native codes within the seg
+
+	    while (reader.hasNext()) {
+		int event = reader.next();
+		if (event == XMLStreamConstants.START_ELEMENT) {
+		    switch (reader.getLocalName()) {
+		    case "header":
+			srclang = reader.getAttributeValue(null, "srclang");
+			break;
+		    case "tu":
+			String unitlang = reader.getAttributeValue(null,
+				"srclang");
+			unit = new TmxUnit(
+				reader.getAttributeValue(null, "tuid"),
+				unitlang != null ? unitlang : srclang);
+			break;
+		    case "tuv":
+			lang = reader.getAttributeValue(XML_NS, "lang");
+			if (lang == null) { // TMX 1.1
+			    lang = reader.getAttributeValue(null, "lang");
+			}
+			break;
+		    case "seg":
+			seg = new StringBuilder();
+			codes = 0;
+			break;
+		    default:
+			if (seg != null && isCode(reader.getLocalName())) {
+			    codes++;
+			}
+			break;
+		    }
+		} else if (seg != null && (event == XMLStreamConstants.CHARACTERS
+			|| event == XMLStreamConstants.CDATA
+			|| event == XMLStreamConstants.SPACE)) {
+		    if (codes == 0) {
+			seg.append(reader.getText());
+		    }
+		} else if (event == XMLStreamConstants.END_ELEMENT) {
+		    switch (reader.getLocalName()) {
+		    case "seg":
+			if (unit != null && lang != null) {
+			    unit.add(lang, seg.toString());
+			}
+			seg = null;
+			break;
+		    case "tuv":
+			lang = null;
+			break;
+		    case "tu":
+			segments++;
+			unit.addTo(batch);
+			if (batch.size() >= batchSize) {
+			    flush(batch);
+			    notifyProgress();
+			}
+			unit = null;
+			break;
+		    default:
+			if (seg != null && isCode(reader.getLocalName())) {
+			    codes--;
+			}
+			break;
+		    }
+		}
+	    }
+	    flush(batch);
+	} catch (XMLStreamException e) {
+	    throw new IOException(e);
+	} finally {
+	    close(reader);
+	}
+	return end();
+    }
+
+    /**
+     * Exports all translations of the cache to a TMX file.
+     * 
+     * @param path of the TMX file (overwritten if it exists)
+     * @return report of the export
+     * @throws IOException  if the file cannot be written
+     * @throws SQLException if the cache cannot be read
+     */
+    public TransferReport exportTmx(Path path)
+	    throws IOException, SQLException {
+	try (OutputStream out = new BufferedOutputStream(
+		Files.newOutputStream(path))) {
+	    return exportTmx(out);
+	}
+    }
+
+    /**
+     * Exports all translations of the cache as a TMX document.
+     * 
+     * @param out stream to write the TMX document to
+     * @return report of the export
+     * @throws IOException  if the document cannot be written
+     * @throws SQLException if the cache cannot be read
+     */
+    public TransferReport exportTmx(OutputStream out)
+	    throws IOException, SQLException {
+	begin();
+	XMLStreamWriter writer = null;
+	try {
+	    writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out,
+		    "UTF-8");
+	    writer.writeStartDocument("UTF-8", "1.0");
+	    writer.writeCharacters("\n");
+	    writer.writeStartElement("tmx");
+	    writer.writeAttribute("version", TMX_VERSION);
+	    writer.writeCharacters("\n");
+	    writer.writeEmptyElement("header");
+	    writer.writeAttribute("creationtool", "FileLingual");
+	    writer.writeAttribute("creationtoolversion", "1.0");
+	    writer.writeAttribute("segtype", "block");
+	    writer.writeAttribute("o-tmf", "translation_cache");
+	    writer.writeAttribute("adminlang", "en");
+	    writer.writeAttribute("srclang", ALL_LANGUAGES);
+	    writer.writeAttribute("datatype", "plaintext");
+	    writer.writeCharacters("\n");
+	    writer.writeStartElement("body");
+	    writer.writeCharacters("\n");
+
+	    // Translations are sorted by key: one unit per key
+	    XMLStreamWriter xml = writer;
+	    TextKey[] current = new TextKey[1];
+	    cache.scan(e -> {
+		try {
+		    if (!e.getKey().equals(current[0])) {
+			if (current[0] != null) {
+			    xml.writeEndElement(); // tu
+			    xml.writeCharacters("\n");
+			}
+			current[0] = e.getKey();
+			segments++;
+			xml.writeStartElement("tu");
+			xml.writeAttribute("tuid", e.getKey().toString());
+			xml.writeCharacters("\n");
+		    }
+		    xml.writeStartElement("tuv");
+		    xml.writeAttribute("xml", XML_NS, "lang",
+			    e.getLanguage().replace("_", "-"));
+		    xml.writeStartElement("seg");
+		    xml.writeCharacters(e.getTranslation());
+		    xml.writeEndElement(); // seg
+		    xml.writeEndElement(); // tuv
+		    xml.writeCharacters("\n");
+		    if (++translations % batchSize == 0) {
+			notifyProgress();
+		    }
+		} catch (XMLStreamException xe) {
+		    throw new UncheckedIOException(new IOException(xe));
+		}
+	    });
+	    if (current[0] != null) {
+		writer.writeEndElement(); // tu
+		writer.writeCharacters("\n");
+	    }
+
+	    writer.writeEndElement(); // body
+	    writer.writeCharacters("\n");
+	    writer.writeEndElement(); // tmx
+	    writer.writeEndDocument();
+	    writer.flush();
+	} catch (XMLStreamException e) {
+	    throw new IOException(e);
+	} catch (UncheckedIOException e) {
+	    throw e.getCause();
+	} finally {
+	    close(writer);
+	}
+	return end();
+    }
+
+    /*
+     * ############################# TSV ######################################
+     */
+
+    /**
+     * Imports all translations of a TSV file into the cache.
+     * 
+     * @param path of the TSV file
+     * @return report of the import
+     * @throws IOException if the file cannot be read or has no valid header
+     */
+    public TransferReport importTsv(Path path) throws IOException {
+	try (BufferedReader in = Files.newBufferedReader(path,
+		StandardCharsets.UTF_8)) {
+	    return importTsv(in);
+	}
+    }
+
+    /**
+     * Imports all translations of a TSV document into the cache.
+     * 
+     * @param in reader of the TSV document
+     * @return report of the import
+     * @throws IOException if the document cannot be read or has no valid
+     *                     header
+     */
+    public TransferReport importTsv(BufferedReader in) throws IOException {
+	begin();
+	String header = in.readLine();
+	if (header == null) {
+	    return end();
+	}
+	boolean source;
+	if (header.startsWith(TSV_KEY + "\t")) {
+	    source = false;
+	} else if (header.startsWith(TSV_SOURCE + "\t")) {
+	    source = true;
+	} else {
+	    throw new IOException("Invalid TSV header: " + header);
+	}
+
+	List<CacheEntry> batch = new ArrayList<>(batchSize);
+	String line;
+	while ((line = in.readLine()) != null) {
+	    if (line.isEmpty()) {
+		continue;
+	    }
+	    segments++;
+	    String[] columns = line.split("\t", -1);
+	    try {
+		if (columns.length != 3 || columns[1].isEmpty()) {
+		    throw new IllegalArgumentException(line);
+		}
+		String text = source ? unescape(columns[0]) : null;
+		TextKey key = source ? TextKey.of(text)
+			: new TextKey(HashUtil.fromHex(columns[0]));
+		if (key.getBytes().length != HashUtil.KEY_LENGTH) {
+		    throw new IllegalArgumentException(line);
+		}
+		batch.add(new CacheEntry(key, columns[1], unescape(columns[2]),
+			text));
+	    } catch (IllegalArgumentException | NoSuchAlgorithmException e) {
+		skipped++;
+		continue;
+	    }
+	    if (batch.size() >= batchSize) {
+		flush(batch);
+		notifyProgress();
+	    }
+	}
+	flush(batch);
+	return end();
+    }
+
+    /**
+     * Exports all translations of the cache to a TSV file.
+     * 
+     * @param path of the TSV file (overwritten if it exists)
+     * @return report of the export
+     * @throws IOException  if the file cannot be written
+     * @throws SQLException if the cache cannot be read
+     */
+    public TransferReport exportTsv(Path path)
+	    throws IOException, SQLException {
+	try (BufferedWriter out = Files.newBufferedWriter(path,
+		StandardCharsets.UTF_8)) {
+	    return exportTsv(out);
+	}
+    }
+
+    /**
+     * Exports all translations of the cache as a TSV document.
+     * 
+     * @param out writer of the TSV document
+     * @return report of the export
+     * @throws IOException  if the document cannot be written
+     * @throws SQLException if the cache cannot be read
+     */
+    public TransferReport exportTsv(Writer out)
+	    throws IOException, SQLException {
+	begin();
+	out.write(TSV_HEADER);
+	out.write('\n');
+	try {
+	    cache.scan(e -> {
+		try {
+		    out.write(e.getKey().toString());
+		    out.write('\t');
+		    out.write(e.getLanguage());
+		    out.write('\t');
+		    out.write(escape(e.getTranslation()));
+		    out.write('\n');
+		} catch (IOException ie) {
+		    throw new UncheckedIOException(ie);
+		}
+		segments++;
+		if (++translations % batchSize == 0) {
+		    notifyProgress();
+		}
+	    });
+	} catch (UncheckedIOException e) {
+	    throw e.getCause();
+	}
+	out.flush();
+	return end();
+    }
+
+    /*
+     * ######################## AUXILIARY METHODS ##############################
+     */
+
+    private void begin() {
+	segments = 0;
+	translations = 0;
+	skipped = 0;
+	start = System.nanoTime();
+    }
+
+    private TransferReport end() {
+	TransferReport report = getReport();
+	if (listener != null) {
+	    listener.progress(report);
+	}
+	return report;
+    }
+
+    private TransferReport getReport() {
+	return new TransferReport(segments, translations, skipped,
+		System.nanoTime() - start);
+    }
+
+    private void notifyProgress() {
+	if (listener != null) {
+	    listener.progress(getReport());
+	}
+    }
+
+    /*
+     * Stores a batch of translations in a single transaction, and empties it.
+     */
+    private void flush(List<CacheEntry> batch) {
+	if (batch.isEmpty()) {
+	    return;
+	}
+	translations += cache.store(batch);
+	batch.clear();
+    }
+
+    /*
+     * Inline elements of a TMX segment holding native codes (formatting,
+     * placeholders...) rather than text.
+     */
+    private boolean isCode(String element) {
+	switch (element) {
+	case "bpt":
+	case "ept":
+	case "it":
+	case "ph":
+	case "ut":
+	    return true;
+	default:
+	    return false;
+	}
+    }
+
+    /*
+     * Factory of readers that do not resolve DTDs nor external entities.
+     */
+    private XMLInputFactory getInputFactory() {
+	XMLInputFactory factory = XMLInputFactory.newInstance();
+	factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+	factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,
+		false);
+	factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+	return factory;
+    }
+
+    private void close(XMLStreamReader reader) {
+	try {
+	    if (reader != null) {
+		reader.close();
+	    }
+	} catch (XMLStreamException e) {
+	    return;
+	}
+    }
+
+    private void close(XMLStreamWriter writer) {
+	try {
+	    if (writer != null) {
+		writer.close();
+	    }
+	} catch (XMLStreamException e) {
+	    return;
+	}
+    }
+
+    private String escape(String text) {
+	StringBuilder sb = new StringBuilder(text.length());
+	for (int i = 0; i < text.length(); i++) {
+	    char c = text.charAt(i);
+	    switch (c) {
+	    case '\\':
+		sb.append("\\\\");
+		break;
+	    case '\t':
+		sb.append("\\t");
+		break;
+	    case '\n':
+		sb.append("\\n");
+		break;
+	    case '\r':
+		sb.append("\\r");
+		break;
+	    default:
+		sb.append(c);
+	    }
+	}
+	return sb.toString();
+    }
+
+    private String unescape(String text) {
+	if (text.indexOf('\\') < 0) {
+	    return text;
+	}
+	StringBuilder sb = new StringBuilder(text.length());
+	for (int i = 0; i < text.length(); i++) {
+	    char c = text.charAt(i);
+	    if (c == '\\' && i + 1 < text.length()) {
+		char next = text.charAt(++i);
+		switch (next) {
+		case 't':
+		    sb.append('\t');
+		    break;
+		case 'n':
+		    sb.append('\n');
+		    break;
+		case 'r':
+		    sb.append('\r');
+		    break;
+		default:
+		    sb.append(next);
+		}
+	    } else {
+		sb.append(c);
+	    }
+	}
+	return sb.toString();
+    }
+
+    /*
+     * Translation unit being read from a TMX document: its segments are kept
+     * until the unit ends, as the source one may not be the first.
+     */
+    private class TmxUnit {
+
+	private final String tuid;
+	private final String srclang;
+	private String source;
+	private final List<String[]> targets = new ArrayList<>();
+
+	private TmxUnit(String tuid, String srclang) {
+	    this.tuid = tuid;
+	    this.srclang = srclang == null || ALL_LANGUAGES.equals(srclang)
+		    ? null
+		    : srclang;
+	}
+
+	private void add(String lang, String seg) {
+	    if (srclang != null && srclang.equalsIgnoreCase(lang)) {
+		source = seg;
+	    } else {
+		targets.add(new String[] { lang, seg });
+	    }
+	}
+
+	/*
+	 * Adds the translations of this unit to the batch, if their key can be
+	 * known.
+	 */
+	private void addTo(List<CacheEntry> batch) {
+	    TextKey key;
+	    try {
+		if (source != null) {
+		    key = TextKey.of(source);
+		} else if (tuid != null
+			&& tuid.length() == 2 * HashUtil.KEY_LENGTH) {
+		    key = new TextKey(HashUtil.fromHex(tuid));
+		} else {
+		    skipped++;
+		    return;
+		}
+	    } catch (IllegalArgumentException | NoSuchAlgorithmException e) {
+		skipped++;
+		return;
+	    }
+
+	    for (String[] target : targets) {
+		batch.add(new CacheEntry(key, target[0], target[1], source));
+	    }
+	}
+    }
+
+}
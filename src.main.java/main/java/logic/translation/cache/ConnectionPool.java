@@ -0,0 +1,251 @@
+package main.java.logic.translation.cache;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Small pool of connections to the (SQLite) translation cache database.
+ * 
+ * In WAL mode, SQLite allows any number of readers alongside a single writer.
+ * Therefore, the pool keeps up to a max. number of read-only connections,
+ * which are lent to one thread at a time, and one single write connection,
+ * guarded by a lock: lookups from several threads run in parallel, while
+ * writes are serialized without ever blocking them.
+ * 
+ * Connections are opened lazily, the first time they are needed. A reader
+ * that fails is discarded, and a new one is opened in its place the next time
+ * it is needed.
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public class ConnectionPool {
+
+    private final static long WAIT = 100; // ms between checks of closing
+
+    private final String url;
+    private final int maxReaders;
+    private final String[] pragmas; // Applied to every new connection
+
+    // Readers (one permit per reader, either lent, idle or yet to open)
+    private final Semaphore permits;
+    private final BlockingQueue<Connection> idle;
+    private final List<Connection> readers = new ArrayList<>();
+
+    // Writer
+    private final ReentrantLock writeLock = new ReentrantLock(true);
+    private Connection writer;
+
+    private volatile boolean closed = false;
+
+    /**
+     * Work to carry out with a connection of the pool.
+     */
+    public interface Work<T> {
+	T execute(Connection c) throws SQLException;
+    }
+
+    /**
+     * @param url        JDBC url of the database
+     * @param writer     already established connection, to be used as
+     *                   writer (null to open it when needed)
+     * @param maxReaders max. number of read-only connections
+     * @param pragmas    settings (i.e. "mmap_size=0") to apply to every
+     *                   connection opened by the pool
+     */
+    public ConnectionPool(String url, Connection writer, int maxReaders,
+	    String... pragmas) {
+	this.url = url;
+	this.writer = writer;
+	this.maxReaders = Math.max(1, maxReaders);
+	this.permits = new Semaphore(this.maxReaders, true);
+	this.idle = new ArrayBlockingQueue<>(this.maxReaders);
+	this.pragmas = pragmas;
+    }
+
+    /**
+     * Carries out some read-only work with one of the readers of the pool,
+     * waiting for one to be available if all of them are in use.
+     * 
+     * @param work to carry out
+     * @return its result
+     * @throws SQLException if no connection can be established, or the work
+     *                      itself fails
+     */
+    public <T> T read(Work<T> work) throws SQLException {
+	Connection c = acquire();
+	boolean broken = false;
+	try {
+	    return work.execute(c);
+	} catch (SQLException e) {
+	    broken = true;
+	    throw e;
+	} finally {
+	    release(c, broken);
+	}
+    }
+
+    /**
+     * Carries out some work with the writer of the pool, once no other thread
+     * is using it.
+     * 
+     * @param work to carry out
+     * @return its result
+     * @throws SQLException if no connection can be established, or the work
+     *                      itself fails
+     */
+    public <T> T write(Work<T> work) throws SQLException {
+	writeLock.lock();
+	try {
+	    return work.execute(getWriter());
+	} finally {
+	    writeLock.unlock();
+	}
+    }
+
+    /**
+     * Closes all connections of the pool. Those lent right now are closed once
+     * they are returned, and threads waiting for a reader fail.
+     */
+    public void close() {
+	closed = true;
+	closeIdle();
+
+	writeLock.lock();
+	try {
+	    close(writer);
+	    writer = null;
+	} finally {
+	    writeLock.unlock();
+	}
+    }
+
+    /*
+     * ######################## AUXILIARY METHODS ##############################
+     */
+
+    private Connection getWriter() throws SQLException {
+	checkOpen();
+	if (writer == null || writer.isClosed()) {
+	    writer = open();
+	}
+	return writer;
+    }
+
+    /*
+     * Waits for a reader to be available (until the pool is closed), and lends
+     * an idle one or else opens a new one.
+     */
+    private Connection acquire() throws SQLException {
+	checkOpen();
+	try {
+	    while (!permits.tryAcquire(WAIT, TimeUnit.MILLISECONDS)) {
+		checkOpen();
+	    }
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new SQLException(e);
+	}
+
+	try {
+	    checkOpen();
+	    Connection c = idle.poll();
+	    if (c == null) {
+		c = open();
+		try (Statement stmt = c.createStatement()) {
+		    stmt.execute("PRAGMA query_only=1");
+		} catch (SQLException e) {
+		    close(c);
+		    throw e;
+		}
+		synchronized (readers) {
+		    readers.add(c);
+		}
+	    }
+	    return c;
+	} catch (SQLException | RuntimeException e) {
+	    permits.release();
+	    throw e;
+	}
+    }
+
+    /*
+     * Returns a reader to the pool (or discards it, if it failed), so that
+     * another thread can use it (or open a new one in its place).
+     */
+    private void release(Connection c, boolean broken) {
+	try {
+	    boolean valid;
+	    try {
+		valid = !closed && !broken && !c.isClosed();
+	    } catch (SQLException e) {
+		valid = false;
+	    }
+
+	    if (valid) {
+		idle.offer(c);
+		if (closed) { // Closed meanwhile
+		    closeIdle();
+		}
+	    } else {
+		synchronized (readers) {
+		    readers.remove(c);
+		}
+		close(c);
+	    }
+	} finally {
+	    permits.release();
+	}
+    }
+
+    private void closeIdle() {
+	synchronized (readers) {
+	    Connection c;
+	    while ((c = idle.poll()) != null) {
+		readers.remove(c);
+		close(c);
+	    }
+	}
+    }
+
+    private Connection open() throws SQLException {
+	Connection c = DriverManager.getConnection(url);
+	try (Statement stmt = c.createStatement()) {
+	    // Wait for the writer, rather than failing
+	    stmt.execute("PRAGMA busy_timeout=5000");
+	    for (String pragma : pragmas) {
+		stmt.execute("PRAGMA " + pragma);
+	    }
+	} catch (SQLException | RuntimeException e) {
+	    close(c);
+	    throw e;
+	}
+	return c;
+    }
+
+    private void checkOpen() throws SQLException {
+	if (closed) {
+	    throw new SQLException("Connection pool closed: " + url);
+	}
+    }
+
+    private void close(Connection c) {
+	try {
+	    if (c != null && !c.isClosed()) {
+		c.close();
+	    }
+	} catch (SQLException e) {
+	    return;
+	}
+    }
+
+}
@@ -0,0 +1,22 @@
+package main.java.logic.translation.cache;
+
+/**
+ * Listener of the translations evicted from the cache database (see
+ * CacheCompactor), so that those kept in memory can be forgotten too.
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public interface EvictionListener {
+
+    /**
+     * Called for each translation of a batch, once it has been evicted. It is
+     * called from the thread of the compactor.
+     * 
+     * @param key      key of the original text
+     * @param language code of the language of the translation
+     * @param last     boolean true if no translation of the text is left
+     */
+    void evicted(TextKey key, String language, boolean last);
+
+}
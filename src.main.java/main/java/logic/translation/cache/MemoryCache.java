@@ -0,0 +1,209 @@
+package main.java.logic.translation.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, in-memory tier of the translation cache, which keeps the most
+ * recently used translations (identified by the key of their original text
+ * and their language) so that repeated lookups do not need to access the
+ * database.
+ * 
+ * It is bounded both by number of entries and by (estimated) size in bytes:
+ * once any of them is exceeded, the least recently used translations are
+ * evicted. All of its operations are thread-safe.
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public class MemoryCache implements EvictionListener {
+
+    // Estimated overhead (in bytes) of each entry: key, node, strings...
+    private final static int ENTRY_OVERHEAD = 96;
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private long bytes = 0;
+
+    // Access-ordered: least recently used entries go first
+    private final LinkedHashMap<Key, String> entries = new LinkedHashMap<>(
+	    16, 0.75f, true);
+
+    // Statistics
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadTime = new LongAdder();
+
+    /**
+     * @param maxEntries max. number of translations kept in memory
+     * @param maxBytes   max. (estimated) size in bytes of all translations kept
+     *                   in memory
+     */
+    public MemoryCache(int maxEntries, long maxBytes) {
+	this.maxEntries = Math.max(0, maxEntries);
+	this.maxBytes = Math.max(0, maxBytes);
+    }
+
+    /**
+     * @param key      key of the original text
+     * @param language code of the language it has been translated to
+     * @return translation kept in memory, null if not found
+     */
+    public String get(TextKey key, String language) {
+	String translation;
+	synchronized (entries) {
+	    translation = entries.get(new Key(key, language));
+	}
+
+	if (translation != null) {
+	    hits.increment();
+	} else {
+	    misses.increment();
+	}
+	return translation;
+    }
+
+    /**
+     * Forgets a translation (if kept in memory).
+     * 
+     * @param key      key of the original text
+     * @param language code of the language it has been translated to
+     */
+    public void remove(TextKey key, String language) {
+	Key entry = new Key(key, language);
+	synchronized (entries) {
+	    String previous = entries.remove(entry);
+	    if (previous != null) {
+		bytes -= sizeOf(entry, previous);
+	    }
+	}
+    }
+
+    /**
+     * Forgets a translation evicted from the database.
+     */
+    @Override
+    public void evicted(TextKey key, String language, boolean last) {
+	remove(key, language);
+    }
+
+    /**
+     * Keeps a translation in memory, evicting the least recently used ones if
+     * there is no room left for it.
+     * 
+     * @param key         key of the original text
+     * @param language    code of the language it has been translated to
+     * @param translation translated text
+     */
+    public void put(TextKey key, String language, String translation) {
+	Key entry = new Key(key, language);
+	long size = sizeOf(entry, translation);
+	if (size > maxBytes || maxEntries == 0) {
+	    return; // Would never fit
+	}
+
+	synchronized (entries) {
+	    String previous = entries.put(entry, translation);
+	    bytes += size;
+	    if (previous != null) {
+		bytes -= sizeOf(entry, previous);
+	    }
+	    evict();
+	}
+    }
+
+    /**
+     * Records the time spent loading translations that were not found in
+     * memory from the underlying database.
+     * 
+     * @param nanos time spent, in nanoseconds
+     */
+    public void recordLoad(long nanos) {
+	loads.increment();
+	loadTime.add(nanos);
+    }
+
+    /**
+     * Removes all translations kept in memory (statistics are kept).
+     */
+    public void clear() {
+	synchronized (entries) {
+	    entries.clear();
+	    bytes = 0;
+	}
+    }
+
+    /**
+     * @return snapshot of the current statistics of this memory cache
+     */
+    public CacheStatistics getStatistics() {
+	int size;
+	long currentBytes;
+	synchronized (entries) {
+	    size = entries.size();
+	    currentBytes = bytes;
+	}
+	return new CacheStatistics(hits.sum(), misses.sum(), evictions.sum(),
+		loads.sum(), loadTime.sum(), size, currentBytes);
+    }
+
+    /*
+     * ######################## AUXILIARY METHODS ##############################
+     */
+
+    /*
+     * Evicts least recently used entries until the cache is within its bounds.
+     * Must be called while holding the lock.
+     */
+    private void evict() {
+	Iterator<Map.Entry<Key, String>> it = entries.entrySet().iterator();
+	while ((entries.size() > maxEntries || bytes > maxBytes)
+		&& it.hasNext()) {
+	    Map.Entry<Key, String> eldest = it.next();
+	    bytes -= sizeOf(eldest.getKey(), eldest.getValue());
+	    it.remove();
+	    evictions.increment();
+	}
+    }
+
+    /*
+     * Estimated size in bytes of an entry (chars take 2 bytes).
+     */
+    private long sizeOf(Key key, String translation) {
+	return ENTRY_OVERHEAD + key.text.getBytes().length
+		+ 2L * (key.language.length() + translation.length());
+    }
+
+    /*
+     * Key of a text + language code.
+     */
+    private static class Key {
+
+	private final TextKey text;
+	private final String language;
+
+	private Key(TextKey text, String language) {
+	    this.text = text;
+	    this.language = language;
+	}
+
+	@Override
+	public int hashCode() {
+	    return 31 * text.hashCode() + language.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+	    if (!(obj instanceof Key)) {
+		return false;
+	    }
+	    Key other = (Key) obj;
+	    return text.equals(other.text) && language.equals(other.language);
+	}
+    }
+
+}
@@ -0,0 +1,62 @@
+package main.java.logic.translation.cache;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import main.java.util.resources.HashUtil;
+
+/**
+ * Compact key of a text in the translation cache: a fixed-width 128-bit hash,
+ * stored as a BLOB in the database.
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public final class TextKey {
+
+    private final byte[] bytes;
+    private final int hash;
+
+    public TextKey(byte[] bytes) {
+	this.bytes = bytes;
+	this.hash = Arrays.hashCode(bytes);
+    }
+
+    /**
+     * @param text in its original language
+     * @return key of the text
+     * @throws NoSuchAlgorithmException with issues computing hash
+     */
+    public static TextKey of(String text) throws NoSuchAlgorithmException {
+	return new TextKey(HashUtil.getKey(text));
+    }
+
+    /**
+     * @return bytes of the key, as stored in the database
+     */
+    public byte[] getBytes() {
+	return bytes;
+    }
+
+    @Override
+    public int hashCode() {
+	return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+	if (this == obj) {
+	    return true;
+	}
+	if (!(obj instanceof TextKey)) {
+	    return false;
+	}
+	return Arrays.equals(bytes, ((TextKey) obj).bytes);
+    }
+
+    @Override
+    public String toString() {
+	return HashUtil.toHex(bytes);
+    }
+
+}
@@ -0,0 +1,203 @@
+package main.java.logic.translation.cache;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import main.java.util.resources.HashUtil;
+
+/**
+ * Benchmark of the keys of the texts in the translation cache: hashes a set
+ * of texts (100k by default) as was done before compact keys (a new digest
+ * per text, String.getBytes and a hexadecimal string), and with HashUtil
+ * (per-thread digest and UTF-8 encoder), both as full hexadecimal hashes and
+ * as compact keys (see TextKey). It reports the time taken and the bytes
+ * allocated per text by each of them, and checks that they all agree.
+ * 
+ * Digesting with SHA-256 rather than SHA-512 is also reported, as a
+ * reference for the choice of algorithm (see HashUtil). Texts are of varied
+ * lengths and scripts (English, accented, Cyrillic, CJK and emoji ones).
+ * 
+ * Usage: TextKeyBenchmark [texts] [runs], i.e. TextKeyBenchmark 100000 5
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public class TextKeyBenchmark {
+
+    private final static long SEED = 42;
+
+    public static void main(String[] args) throws Exception {
+	int size = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+	int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+	List<String> texts = getTexts(size);
+	check(texts);
+
+	// Warm up
+	for (int i = 0; i < 3; i++) {
+	    original(texts);
+	    hashes(texts);
+	    keys(texts);
+	    digest(texts, "SHA-256");
+	}
+
+	System.out.printf("%d texts, %d runs%n", size, runs);
+	System.out.printf("%-24s %10s %12s%n", "", "time(ms)", "bytes/text");
+	report("original (hex, SHA-512)", texts, runs, () -> original(texts));
+	report("getHash (hex, SHA-512)", texts, runs, () -> hashes(texts));
+	report("TextKey (128-bit)", texts, runs, () -> keys(texts));
+	report("digest only, SHA-512", texts, runs,
+		() -> digest(texts, "SHA-512"));
+	report("digest only, SHA-256", texts, runs,
+		() -> digest(texts, "SHA-256"));
+	System.exit(0);
+    }
+
+    /*
+     * ######################## AUXILIARY METHODS ##############################
+     */
+
+    private interface Task {
+	long run() throws Exception;
+    }
+
+    /*
+     * Runs a task several times, and prints its average time and the bytes it
+     * allocates per text (if the JVM can measure them).
+     */
+    private static void report(String name, List<String> texts, int runs,
+	    Task task) throws Exception {
+	long time = 0, allocated = 0;
+	for (int run = 0; run < runs; run++) {
+	    long before = getAllocated();
+	    long start = System.nanoTime();
+	    task.run();
+	    time += System.nanoTime() - start;
+	    allocated += getAllocated() - before;
+	}
+	System.out.printf("%-24s %10.1f %12s%n", name, time / 1e6 / runs,
+		allocated < 0 ? "n/a"
+			: String.format("%.1f",
+				(double) allocated / runs / texts.size()));
+    }
+
+    /*
+     * Checks that the hashes and keys of HashUtil are those computed as before
+     * (i.e. that its encoder matches String.getBytes).
+     */
+    private static void check(List<String> texts)
+	    throws NoSuchAlgorithmException {
+	for (String text : texts) {
+	    String hash = getOriginalHash(text);
+	    if (!hash.equals(HashUtil.getHash(text))) {
+		throw new IllegalStateException("Hash mismatch: " + text);
+	    }
+	    if (!hash.substring(0, HashUtil.KEY_LENGTH * 2)
+		    .equals(TextKey.of(text).toString())) {
+		throw new IllegalStateException("Key mismatch: " + text);
+	    }
+	}
+    }
+
+    private static long original(List<String> texts)
+	    throws NoSuchAlgorithmException {
+	long sum = 0;
+	for (String text : texts) {
+	    sum += getOriginalHash(text).length();
+	}
+	return sum;
+    }
+
+    private static long hashes(List<String> texts)
+	    throws NoSuchAlgorithmException {
+	long sum = 0;
+	for (String text : texts) {
+	    sum += HashUtil.getHash(text).length();
+	}
+	return sum;
+    }
+
+    private static long keys(List<String> texts)
+	    throws NoSuchAlgorithmException {
+	long sum = 0;
+	for (String text : texts) {
+	    sum += TextKey.of(text).hashCode();
+	}
+	return sum;
+    }
+
+    /*
+     * Digests the texts (as the original hash did, without its hexadecimal
+     * string) with a given algorithm.
+     */
+    private static long digest(List<String> texts, String algorithm)
+	    throws NoSuchAlgorithmException {
+	long sum = 0;
+	MessageDigest digest = MessageDigest.getInstance(algorithm);
+	for (String text : texts) {
+	    sum += Arrays.hashCode(
+		    digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+	}
+	return sum;
+    }
+
+    /*
+     * Hash of a text as computed before HashUtil reused its digest and
+     * buffers.
+     */
+    private static String getOriginalHash(String text)
+	    throws NoSuchAlgorithmException {
+	MessageDigest digest = MessageDigest.getInstance("SHA-512");
+	byte[] hashBytes = digest.digest(text.getBytes(StandardCharsets.UTF_8));
+	StringBuilder hexadecimal = new StringBuilder();
+
+	for (byte hb : hashBytes) {
+	    String hex = Integer.toHexString(0xff & hb);
+	    if (hex.length() == 1) {
+		hexadecimal.append('0');
+	    }
+	    hexadecimal.append(hex);
+	}
+	return hexadecimal.toString();
+    }
+
+    /*
+     * Bytes allocated by this thread so far (-1 if they cannot be measured).
+     */
+    private static long getAllocated() {
+	java.lang.management.ThreadMXBean threads = ManagementFactory
+		.getThreadMXBean();
+	if (threads instanceof com.sun.management.ThreadMXBean) {
+	    return ((com.sun.management.ThreadMXBean) threads)
+		    .getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+	return -1;
+    }
+
+    /*
+     * Texts of varied lengths and scripts.
+     */
+    private static List<String> getTexts(int size) {
+	String[] words = { "file", "open", "save", "translation", "language",
+		"configuración", "traducción", "файл", "перевод", "ファイル", "翻訳",
+		"言語", "😀", "{0}", "%s", "\"quoted\"" };
+	Random random = new Random(SEED);
+	List<String> texts = new ArrayList<>();
+	for (int i = 0; i < size; i++) {
+	    StringBuilder sb = new StringBuilder("Text " + i);
+	    int length = 1 + random.nextInt(random.nextInt(10) == 0 ? 80 : 12);
+	    for (int w = 0; w < length; w++) {
+		sb.append(' ').append(words[random.nextInt(words.length)]);
+	    }
+	    texts.add(sb.toString());
+	}
+	return texts;
+    }
+
+}
@@ -0,0 +1,19 @@
+package main.java.logic.translation.cache;
+
+/**
+ * Listener of the progress of a (long) import or export of the translation
+ * cache.
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public interface TransferListener {
+
+    /**
+     * Notifies the progress of an import/export.
+     * 
+     * @param report state of the transfer so far
+     */
+    public void progress(TransferReport report);
+
+}
@@ -0,0 +1,67 @@
+package main.java.logic.translation.cache;
+
+/**
+ * State of an import or export of the translation cache: how many segments
+ * (translation units, lines...) have been processed, how many translations
+ * have been effectively stored or written, and how fast.
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public class TransferReport {
+
+    private final long segments;
+    private final long translations;
+    private final long skipped;
+    private final long elapsed;
+
+    /**
+     * @param segments     number of segments processed
+     * @param translations number of translations stored/written
+     * @param skipped      number of segments or translations that could not be
+     *                     processed
+     * @param elapsed      time elapsed, in nanoseconds
+     */
+    public TransferReport(long segments, long translations, long skipped,
+	    long elapsed) {
+	this.segments = segments;
+	this.translations = translations;
+	this.skipped = skipped;
+	this.elapsed = elapsed;
+    }
+
+    public long getSegments() {
+	return segments;
+    }
+
+    public long getTranslations() {
+	return translations;
+    }
+
+    public long getSkipped() {
+	return skipped;
+    }
+
+    /**
+     * @return time elapsed, in nanoseconds
+     */
+    public long getElapsed() {
+	return elapsed;
+    }
+
+    /**
+     * @return number of segments processed per second
+     */
+    public double getThroughput() {
+	return elapsed == 0 ? 0 : segments / (elapsed / 1e9);
+    }
+
+    @Override
+    public String toString() {
+	return String.format(
+		"%d segments, %d translations, %d skipped in %.1f s (%.0f segments/s)",
+		segments, translations, skipped, elapsed / 1e9,
+		getThroughput());
+    }
+
+}
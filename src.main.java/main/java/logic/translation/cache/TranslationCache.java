@@ -1,21 +1,29 @@
 package main.java.logic.translation.cache;
 
-import java.nio.charset.StandardCharsets;
 import java.security.NoSuchAlgorithmException;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
+import main.java.util.exception.PropertiesException;
 import main.java.util.exception.TranslationException;
-import main.java.util.resources.HashUtil;
 import main.java.util.resources.PropertyLoader;
 import main.java.util.resources.ResourceLoader;
+import main.java.util.resources.TextUtil;
 
 /**
  * Builds and manages a database (SQLite) aimed at acting like a caché for
@@ -23,93 +31,213 @@ import main.java.util.resources.ResourceLoader;
  * usage and speed up the execution of the program.
  * 
  * This caché interacts with a very basic database, containing just one table,
- * which stores the hashcode of a text to translate, language it has been
- * translated to and its effective translation.
+ * which stores the (compact, 128-bit) hash of a text to translate, language it
+ * has been translated to and its effective translation.
+ * 
+ * By default, the caché is persistent: its contents are kept across executions
+ * (see CacheSchema), and are only removed on explicit request (reset).
+ * 
+ * Recently used translations are also kept in a bounded in-memory tier
+ * (MemoryCache), which is read and written through to the database. The
+ * database itself is kept within a max. size and age by a background job
+ * (CacheCompactor), which evicts the least recently used translations.
+ * 
+ * Optionally, it can also act as a translation memory (TranslationMemory): the
+ * normalized original texts are kept too, so that texts similar to past ones
+ * (i.e. "Save file" and "Save files") either reuse their translation, if
+ * similar enough, or get it as reference for their own translation.
+ * 
+ * It is thread-safe: each lookup returns its own result (CacheMatch), and the
+ * database is accessed through a small pool of connections (ConnectionPool),
+ * so that several lookups run in parallel while writes are serialized.
  * 
  * @author Adriana R.F. (uo282798@uniovi.es)
- * @version April 2024
+ * @version June 2024
  */
 public class TranslationCache {
 
-    // Connection to database
+    // Connections to database
     private String JDBC_URL;
-    private Connection connection;
-
-    // Translations in cache
-    private Properties notInCache; // Not found in cache
-    private Properties inCache; // Translations found in the cache
-
-    // Queries
-    // No over-design, just hardcode them in here (we just need 2!)
-    private String FIND = "SELECT text_translation as text FROM translation_cache WHERE text_hash=? and language_code=?";
-    private String INSERT = "INSERT INTO translation_cache (text_hash, text_translation,"
-	    + " created_at, language_code) VALUES (?, ?, ?, ?)";
+    private ConnectionPool pool;
+    private final static int DEFAULT_READERS = 4;
+    private int readers;
+
+    // Max. number of hashes looked up per query
+    private final static int LOOKUP_CHUNK = 500;
+
+    // Max. number of translations written per batch
+    private final static int DEFAULT_BATCH_SIZE = 500;
+    private int batchSize;
+
+    // In-memory tier
+    private MemoryCache memory;
+
+    // Eviction
+    private CacheCompactor compactor;
+    private long maxEntries;
+    private long maxAge;
+    private int compactBatch;
+    private long compactInterval;
+
+    // Translation memory (null if disabled)
+    private TranslationMemory tm;
+    private boolean tmEnabled;
+    private double tmReuse; // Min. similarity to reuse a translation
+    private double tmReference; // Min. similarity to use it as reference
+    private int tmCandidates; // Max. references per text
+
+    // Storage settings
+    private boolean persistent = true;
+    private String synchronous = "NORMAL";
+    private long mmapSize = 268435456; // 256 MB
+
+    // Queries (schema changes are in CacheSchema)
+    private String FIND_ALL = "SELECT text_hash as hash, text_translation as text FROM translation_cache"
+	    + " WHERE language_code=? and text_hash IN (%s)";
+    private String INSERT = "INSERT OR IGNORE INTO translation_cache (text_hash, text_translation,"
+	    + " created_at, language_code, last_hit_at, source_text) VALUES (?, ?, ?, ?, ?, ?)";
     private String DELETE = "DELETE FROM translation_cache";
-    private String CREATE = "CREATE TABLE IF NOT EXISTS translation_cache ("
-	    + "text_hash TEXT NOT NULL, " + "text_translation TEXT, "
-	    + "created_at TIMESTAMP, " + "language_code TEXT NOT NULL, "
-	    + "PRIMARY KEY (text_hash, language_code))";
-    private String DROP = "DROP TABLE IF EXISTS translation_cache";
+    private String SCAN = "SELECT text_hash as hash, language_code as language, text_translation as text"
+	    + " FROM translation_cache ORDER BY text_hash, language_code";
+    private String SOURCES = "SELECT DISTINCT text_hash as hash, source_text as source FROM translation_cache"
+	    + " WHERE source_text IS NOT NULL";
 
     public TranslationCache() throws SQLException {
-	getConnection();
-	setUp();
+	configure();
+	setUp(null);
     }
 
     public TranslationCache(Connection c, String URL) throws SQLException {
-	this.connection = c;
 	this.JDBC_URL = URL;
-	setUp();
+	configure();
+	setUp(c);
     }
 
     /**
-     * Sets up and creates the database.
-     * 
-     * @throws SQLException
+     * Loads the cache settings (if not found, default ones are used).
      */
-    private void setUp() throws SQLException {
+    private void configure() {
+	Properties settings;
+	try {
+	    settings = ResourceLoader.getCacheSettings();
+	} catch (PropertiesException e) {
+	    settings = new Properties();
+	}
+	setBatchSize(getSetting(settings, "_BATCH_SIZE", DEFAULT_BATCH_SIZE));
+	readers = getSetting(settings, "_POOL_READERS", DEFAULT_READERS);
+	persistent = !"false"
+		.equalsIgnoreCase(settings.getProperty("_PERSISTENT", "true").trim());
+	mmapSize = getSetting(settings, "_MMAP_SIZE", mmapSize);
+	String sync = settings.getProperty("_SYNCHRONOUS", synchronous).trim();
+	if (sync.matches("(?i)OFF|NORMAL|FULL|EXTRA")) {
+	    synchronous = sync.toUpperCase();
+	}
+	memory = new MemoryCache(getSetting(settings, "_MEMORY_ENTRIES", 10000),
+		getSetting(settings, "_MEMORY_BYTES", 16777216L));
+
+	maxEntries = getSetting(settings, "_MAX_ENTRIES", 0L);
+	maxAge = TimeUnit.DAYS
+		.toMillis(getSetting(settings, "_MAX_AGE_DAYS", 0L));
+	compactBatch = getSetting(settings, "_COMPACT_BATCH", 1000);
+	compactInterval = getSetting(settings, "_COMPACT_INTERVAL", 300L);
+
+	tmEnabled = "true".equalsIgnoreCase(
+		settings.getProperty("_TM_ENABLED", "false").trim());
+	tmReuse = getSetting(settings, "_TM_REUSE_SIMILARITY", 1.0);
+	tmReference = getSetting(settings, "_TM_REFERENCE_SIMILARITY", 0.7);
+	tmCandidates = getSetting(settings, "_TM_CANDIDATES", 3);
+    }
 
-	// Reset
-	try (Statement stmt = getConnection().createStatement()) {
-	    stmt.executeUpdate(DROP);
+    /**
+     * @param batchSize max. number of translations written to the database per
+     *                  batch, when storing results
+     */
+    public void setBatchSize(int batchSize) {
+	this.batchSize = batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+    }
+
+    /**
+     * Sets up the database: opens its pool of connections, tunes its storage
+     * engine and brings its schema up to date. Unless the caché is not
+     * persistent, its existing contents are kept.
+     * 
+     * If the database cannot be accessed, rather than throwing a
+     * SQLException, no access is done to it (nothing is ever found).
+     * 
+     * @param writer already established connection to the database (null to
+     *               establish it)
+     */
+    private void setUp(Connection writer) {
+	try {
+	    if (JDBC_URL == null) {
+		JDBC_URL = ResourceLoader.getJdbcUrl();
+	    }
+	    pool = new ConnectionPool(JDBC_URL, writer, readers,
+		    "synchronous=" + synchronous, "mmap_size=" + mmapSize);
+	    pool.write(c -> {
+		prepare(c);
+		return null;
+	    });
 	} catch (Exception e) {
+	    closeConnection();
+	    pool = null;
 	    return;
 	}
 
-	// Create table from scratch
-	try (Statement stmt = getConnection().createStatement()) {
-	    stmt.executeUpdate(CREATE);
+	compactor = CacheCompactor.get(JDBC_URL, maxEntries, maxAge,
+		compactBatch, compactInterval);
+	compactor.addListener(memory);
+	if (tmEnabled) {
+	    tm = TranslationMemory.get(JDBC_URL);
+	    compactor.addListener(tm);
+	}
+    }
+
+    /*
+     * Tunes the storage engine and creates or upgrades the schema.
+     */
+    private void prepare(Connection c) throws SQLException {
+	// Storage engine
+	try (Statement stmt = c.createStatement()) {
+	    stmt.execute("PRAGMA journal_mode=WAL");
+	    stmt.execute("PRAGMA synchronous=" + synchronous);
+	    stmt.execute("PRAGMA mmap_size=" + mmapSize);
+	    stmt.execute("PRAGMA busy_timeout=5000");
 	} catch (Exception e) {
-	    return;
+	    // Defaults are kept
 	}
+
+	// Reset
+	if (!persistent) {
+	    CacheSchema.drop(c);
+	}
+
+	// Create or upgrade tables
+	CacheSchema.migrate(c);
     }
 
     /**
-     * @return set of properties that are not translated and thus, not found in
-     *         the database
+     * @return statistics of the in-memory tier of the cache (hits, misses,
+     *         evictions, time spent loading from the database...)
      */
-    public Properties getUntranslated() {
-	return notInCache;
+    public CacheStatistics getStatistics() {
+	return memory.getStatistics();
     }
 
     /**
-     * @return set of properties (in a given language) that match those given as
-     *         input and are found in the database
+     * @return boolean true if the cache also acts as a translation memory
+     *         (keeps original texts, and finds similar ones)
      */
-    public Properties getTranslated() {
-	return inCache;
+    public boolean isMemoryEnabled() {
+	return tm != null;
     }
 
     /**
-     * Closes the connection to the cache database (if existing).
+     * Closes all connections to the cache database (if existing).
      */
     public void closeConnection() {
-	try {
-	    if (connection != null && !connection.isClosed()) {
-		connection.close();
-	    }
-	} catch (Exception e) {
-	    return;
+	if (pool != null) {
+	    pool.close();
 	}
     }
 
@@ -117,200 +245,546 @@ public class TranslationCache {
      * Stores all translations of the submitted textual queries, to their
      * respective target language.
      * 
+     * All of them are written in a single transaction, in batches of (at most)
+     * the configured batch size. Those already found in the database are
+     * ignored.
+     * 
      * @param results:   all translations
      * @param originals: original, untranslated texts
      * @param language:  alpha2 code of the target language
      * 
-     * @return boolean true if all results have been correctly stored
+     * @return boolean true if all results have been correctly stored (or were
+     *         already found in the database), false in case of error
      */
     public boolean storeAll(Properties results, Properties originals,
 	    String language) {
 
-	boolean allStored = true;
+	List<CacheEntry> entries = new ArrayList<>();
 	for (String k : PropertyLoader.getKeys(results)) {
 	    String text = originals.getProperty(k);
 	    String translation = results.getProperty(k);
-	    if (!translation.isEmpty()) {
-		// Will only be stored if not already found in the DB
-		if (!store(text, translation, language)) {
-		    allStored = false;
+	    if (text == null || translation == null || translation.isEmpty()) {
+		continue;
+	    }
+
+	    try {
+		entries.add(new CacheEntry(hash(text), language, translation,
+			tm != null ? text : null));
+	    } catch (NoSuchAlgorithmException e) {
+		return false;
+	    }
+	}
+
+	// Will only be stored if not already found in the DB
+	if (pool == null) {
+	    return entries.isEmpty();
+	}
+	try {
+	    insert(entries);
+	    return true;
+	} catch (SQLException e) {
+	    return false;
+	}
+    }
+
+    /**
+     * Stores a set of translations in a single transaction, in batches of (at
+     * most) the configured batch size. Those already found in the database are
+     * ignored.
+     * 
+     * @param entries translations to store
+     * @return number of translations effectively stored (0 in case of error,
+     *         as nothing is stored)
+     */
+    public int store(List<CacheEntry> entries) {
+	if (pool == null || entries.isEmpty()) {
+	    return 0;
+	}
+
+	try {
+	    return insert(entries);
+	} catch (SQLException e) {
+	    return 0;
+	}
+    }
+
+    /*
+     * Stores a set of translations, and keeps in memory those effectively
+     * written (ignored ones may differ from the ones in the database).
+     */
+    private int insert(List<CacheEntry> entries) throws SQLException {
+	List<CacheEntry> written = new ArrayList<>();
+	int stored = pool.write(c -> write(c, entries, written));
+
+	// Write-through
+	for (CacheEntry e : written) {
+	    memory.put(e.getKey(), e.getLanguage(), e.getTranslation());
+	    if (tm != null && e.getSource() != null) {
+		tm.add(e.getKey(), e.getSource());
+	    }
+	}
+	return stored;
+    }
+
+    /*
+     * Writes a set of translations in a single transaction, keeping track of
+     * those written (nothing is, in case of error).
+     */
+    private int write(Connection c, List<CacheEntry> entries,
+	    List<CacheEntry> written) throws SQLException {
+	int stored = 0;
+	boolean autoCommit = c.getAutoCommit();
+	c.setAutoCommit(false);
+
+	try (PreparedStatement stmnt = c.prepareStatement(INSERT)) {
+	    // Creation (same for the whole batch)
+	    Timestamp createdAt = new Timestamp(System.currentTimeMillis());
+	    List<CacheEntry> batch = new ArrayList<>();
+
+	    for (CacheEntry e : entries) {
+		// Hash - translated text - creation - language code
+		stmnt.setBytes(1, e.getKey().getBytes()); // PK
+		stmnt.setString(2, e.getTranslation());
+		stmnt.setTimestamp(3, createdAt);
+		stmnt.setString(4, e.getLanguage()); // PK
+		stmnt.setLong(5, createdAt.getTime());
+		stmnt.setString(6, e.getSource());
+		stmnt.addBatch();
+		batch.add(e);
+
+		if (batch.size() == batchSize) {
+		    stored += count(stmnt.executeBatch(), batch, written);
+		    batch.clear();
 		}
 	    }
+
+	    if (!batch.isEmpty()) {
+		stored += count(stmnt.executeBatch(), batch, written);
+	    }
+	    c.commit();
+	} catch (SQLException | RuntimeException e) {
+	    // Nothing is stored
+	    c.rollback();
+	    written.clear();
+	    throw e;
+	} finally {
+	    c.setAutoCommit(autoCommit);
+	}
+	return stored;
+    }
+
+    /**
+     * Goes through all translations found in the database, one at a time and
+     * without loading them all in memory, ordered by text (all translations of
+     * a same text are consecutive).
+     * 
+     * @param consumer action to carry out with each translation
+     * @return number of translations found
+     * @throws SQLException in case of issues accessing the database
+     */
+    public long scan(Consumer<CacheEntry> consumer) throws SQLException {
+	if (pool == null) {
+	    throw new SQLException(JDBC_URL);
 	}
 
-	return allStored;
+	return pool.read(c -> {
+	    long count = 0;
+	    try (Statement stmt = c.createStatement()) {
+		stmt.setFetchSize(batchSize);
+		try (ResultSet rs = stmt.executeQuery(SCAN)) {
+		    while (rs.next()) {
+			consumer.accept(new CacheEntry(
+				new TextKey(rs.getBytes("hash")),
+				rs.getString("language"), rs.getString("text")));
+			count++;
+		    }
+		}
+	    }
+	    return count;
+	});
     }
 
     /**
-     * Deletes all records from the database.
+     * Requests the eviction of all expired translations (and of the least
+     * recently used ones, while the max. size is exceeded), which is carried
+     * out in the background.
+     */
+    public void compact() {
+	if (compactor != null) {
+	    compactor.request();
+	}
+    }
+
+    /**
+     * Deletes all records from the database (clears the caché).
      * 
      * @throws SQL exception
      */
     public void reset() throws SQLException {
-	try (PreparedStatement stmnt = getConnection()
-		.prepareStatement(DELETE)) {
-	    stmnt.executeUpdate();
+	memory.clear();
+	if (tm != null) {
+	    tm.clear();
+	}
+	if (pool == null) {
+	    throw new SQLException(JDBC_URL);
 	}
+	pool.write(c -> {
+	    try (PreparedStatement stmnt = c.prepareStatement(DELETE)) {
+		return stmnt.executeUpdate();
+	    }
+	});
     }
 
     /**
      * Retrieves all present translations of a given set of properties into a
      * language, that are in the database; and also those that are not cached.
      * 
+     * It does not alter the state of the cache, so several matches can be
+     * carried out at the same time (i.e. into different languages).
+     * 
+     * If the cache acts as a translation memory, texts not found are then
+     * looked up among similar past ones (see findSimilar).
+     * 
+     * All values are hashed up front and first looked up in memory; those not
+     * found there are looked up in the database in bulk, a chunk of hashes at
+     * a time, rather than with one query per key.
+     * 
      * @param properties object containing set of translations to be fully
      *                   computed or not
-     * @param language   alpha2 code of the language @ in case of error with
-     *                   database access, writing to/from...
-     * @throws TranslationException
+     * @param language   alpha2 code of the language
+     * @return translations found in the cache, and properties not found
+     * @throws TranslationException in case of error with database access
      */
-    public void match(Properties properties, String language)
+    public CacheMatch match(Properties properties, String language)
 	    throws TranslationException {
 
 	// Initialize
-	this.inCache = new Properties();
-	this.notInCache = new Properties();
+	Properties inCache = new Properties();
+	Properties notInCache = new Properties();
 
-	// Retrieve translations
+	// Hash all texts (repeated texts are only looked up once)
 	List<String> keys = PropertyLoader.getKeys(properties);
+	Map<String, TextKey> hashes = new HashMap<>();
+	Set<TextKey> unique = new LinkedHashSet<>();
+
+	for (String key : keys) {
+	    try {
+		TextKey hash = hash(properties.getProperty(key));
+		hashes.put(key, hash);
+		unique.add(hash);
+	    } catch (NoSuchAlgorithmException e) {
+		// Not possible to retrieve translation
+	    }
+	}
+
+	// Retrieve translations: from memory, or else from the database
+	String code = code(language);
+	Map<TextKey, String> found = lookup(unique, code);
 
 	for (String key : keys) {
-	    String text = properties.getProperty(key);
-	    String translation = getTranslation(text, language);
+	    String translation = found.get(hashes.get(key));
 
 	    if (translation != null) {
-		this.inCache.put(key, translation);
+		inCache.put(key, translation);
 	    } else {
-		this.notInCache.put(key, text);
+		notInCache.put(key, properties.getProperty(key));
 	    }
 	}
+
+	if (tm == null || notInCache.isEmpty()) {
+	    return new CacheMatch(inCache, notInCache);
+	}
+	return findSimilar(inCache, notInCache, code);
+    }
+
+    /**
+     * Looks up the texts not found in the cache among similar past ones: if
+     * any of them is similar enough (_TM_REUSE_SIMILARITY), its translation is
+     * reused; otherwise, the most similar ones (_TM_REFERENCE_SIMILARITY,
+     * _TM_CANDIDATES) are kept as reference for their translation.
+     * 
+     * @param inCache    translations found in the cache
+     * @param notInCache properties not found in the cache
+     * @param code       (normalized) language code
+     * @return translations found in the cache (reused ones too), properties
+     *         not found and references for them
+     */
+    private CacheMatch findSimilar(Properties inCache, Properties notInCache,
+	    String code) {
+	loadMemory();
+
+	// Similar texts of each property
+	Map<String, List<TranslationMemory.Candidate>> similar = new HashMap<>();
+	Set<TextKey> unique = new LinkedHashSet<>();
+	for (String key : PropertyLoader.getKeys(notInCache)) {
+	    List<TranslationMemory.Candidate> candidates = tm.find(
+		    TextUtil.normalize(notInCache.getProperty(key)),
+		    tmCandidates, Math.min(tmReuse, tmReference));
+	    if (!candidates.isEmpty()) {
+		similar.put(key, candidates);
+		for (TranslationMemory.Candidate c : candidates) {
+		    unique.add(c.getKey());
+		}
+	    }
+	}
+
+	// Their translations (they may not have one into this language)
+	Map<TextKey, String> found = lookup(unique, code);
+	Properties references = new Properties();
+	for (Map.Entry<String, List<TranslationMemory.Candidate>> s : similar
+		.entrySet()) {
+	    for (TranslationMemory.Candidate c : s.getValue()) {
+		String translation = found.get(c.getKey());
+		if (translation == null) {
+		    continue;
+		}
+		if (c.getSimilarity() >= tmReuse) {
+		    inCache.put(s.getKey(), translation);
+		    notInCache.remove(s.getKey());
+		    break;
+		}
+		if (c.getSimilarity() >= tmReference) {
+		    references.put(c.getSource(), translation);
+		}
+	    }
+	}
+	return new CacheMatch(inCache, notInCache, references);
     }
 
     /*
      * ######################## AUXILIARY METHODS ##############################
      */
 
-    /**
-     * Establishes a connection to the SQLite database.
-     * 
-     * If not possible, rather than throwing a SQLException, no access is done
-     * to the database.
-     * 
-     * @return established connection to the SQLite database
+    /*
+     * Retrieves the translations of a set of texts: from memory, or else (in
+     * bulk) from the database. Those found are recorded as used.
      */
-    private Connection getConnection() {
-	try {
-	    if (JDBC_URL == null) {
-		JDBC_URL = ResourceLoader.getJdbcUrl();
+    private Map<TextKey, String> lookup(Set<TextKey> unique, String code) {
+	Map<TextKey, String> found = new HashMap<>();
+	for (Iterator<TextKey> it = unique.iterator(); it.hasNext();) {
+	    TextKey hash = it.next();
+	    String translation = memory.get(hash, code);
+	    if (translation != null) {
+		found.put(hash, translation);
+		it.remove();
 	    }
+	}
 
-	    if (connection == null || connection.isClosed()) {
-		connection = DriverManager.getConnection(JDBC_URL);
+	if (!unique.isEmpty()) {
+	    long start = System.nanoTime();
+	    Map<TextKey, String> loaded = getTranslations(unique, code);
+	    memory.recordLoad(System.nanoTime() - start);
+
+	    for (Map.Entry<TextKey, String> l : loaded.entrySet()) {
+		memory.put(l.getKey(), code, l.getValue());
 	    }
-	    return connection;
-	} catch (Exception e) {
-	    return null;
+	    found.putAll(loaded);
 	}
 
+	// Used right now (last hits are written in the background)
+	if (compactor != null) {
+	    for (TextKey hash : found.keySet()) {
+		compactor.hit(hash, code);
+	    }
+	}
+	return found;
+    }
+
+    /*
+     * Indexes all original texts kept in the database onto the translation
+     * memory, the first time it is used.
+     */
+    private void loadMemory() {
+	if (tm.isLoaded() || pool == null) {
+	    return;
+	}
+
+	synchronized (tm) {
+	    if (tm.isLoaded()) {
+		return;
+	    }
+	    try {
+		pool.read(c -> {
+		    try (Statement stmt = c.createStatement()) {
+			stmt.setFetchSize(batchSize);
+			try (ResultSet rs = stmt.executeQuery(SOURCES)) {
+			    while (rs.next()) {
+				tm.add(new TextKey(rs.getBytes("hash")),
+					rs.getString("source"));
+			    }
+			}
+		    }
+		    return null;
+		});
+	    } catch (SQLException e) {
+		// Only those added from now on are indexed
+	    }
+	    tm.setLoaded(true);
+	}
     }
 
     /**
-     * Stores the translation into a specific target language of a given text
-     * query in the database. To avoid excessive memory usage, hash of the text
-     * is stored instead of the text itself.
+     * Retrieves, from the database, all translations into a given language of
+     * a set of hashed texts. Lookups are carried out in chunks of at most
+     * LOOKUP_CHUNK hashes per query, so that the limit of parameters per
+     * statement is respected. All of them use the same (read-only)
+     * connection.
      * 
-     * If the connection to the database is not possible, said translation won't
-     * be stored and no access will be carried out (either for retrieving or
-     * saving to DB).
+     * @param hashes: hashes of the texts in their original language
+     * @param code:   (normalized) language code
      * 
-     * @param text           sentence to be translated to the target language
-     * @param translation    translated text
-     * @param targetLanguage alpha2 code of the target language (i.e. en_US)
-     * @throws SQLException in case of connection issue with DB
+     * @return map of each found hash to its translation into the language
+     *         (those not found in the database are not included)
      */
-    private boolean store(String text, String translation,
-	    String targetLanguage) {
+    private Map<TextKey, String> getTranslations(Collection<TextKey> hashes,
+	    String code) {
+	Map<TextKey, String> found = new HashMap<>();
+	if (hashes.isEmpty() || pool == null) {
+	    return found;
+	}
 
-	boolean stored = false;
-	if (getConnection() == null) {
-	    return stored;
+	try {
+	    pool.read(c -> find(c, new ArrayList<>(hashes), code, found));
+	} catch (SQLException e) {
+	    // Nothing (else) found :(
 	}
+	return found;
+    }
 
-	try (PreparedStatement stmnt = getConnection()
-		.prepareStatement(INSERT)) {
+    private Map<TextKey, String> find(Connection c, List<TextKey> all,
+	    String code, Map<TextKey, String> found) throws SQLException {
+	PreparedStatement full = null;
+	try {
+	    for (int from = 0; from < all.size(); from += LOOKUP_CHUNK) {
+		List<TextKey> chunk = all.subList(from,
+			Math.min(from + LOOKUP_CHUNK, all.size()));
+
+		// Full-sized chunks all share the same statement
+		PreparedStatement stmnt;
+		if (chunk.size() == LOOKUP_CHUNK) {
+		    if (full == null) {
+			full = prepareFind(c, LOOKUP_CHUNK);
+		    }
+		    stmnt = full;
+		} else {
+		    stmnt = prepareFind(c, chunk.size());
+		}
 
-	    // Hash - translated text - creation - language code
-	    String hashOriginal = hash(text);
-	    String textTranslated = new String(
-		    translation.getBytes(StandardCharsets.UTF_8),
-		    StandardCharsets.UTF_8);
-	    Timestamp createdAt = new Timestamp(System.currentTimeMillis());
-	    String code = targetLanguage.toLowerCase().replace("-", "_");
+		try {
+		    find(stmnt, chunk, code, found);
+		} finally {
+		    if (stmnt != full) {
+			stmnt.close();
+		    }
+		}
+	    }
+	} finally {
+	    close(full);
+	}
+	return found;
+    }
 
-	    // Set params
-	    stmnt.setString(1, hashOriginal); // PK
-	    stmnt.setString(2, textTranslated);
-	    stmnt.setTimestamp(3, createdAt);
-	    stmnt.setString(4, code); // PK
+    /*
+     * Prepares a lookup query for a given number of hashes.
+     */
+    private PreparedStatement prepareFind(Connection c, int size)
+	    throws SQLException {
+	StringBuilder params = new StringBuilder("?");
+	for (int i = 1; i < size; i++) {
+	    params.append(",?");
+	}
+	return c.prepareStatement(String.format(FIND_ALL, params.toString()));
+    }
 
-	    stmnt.executeUpdate();
-	    stored = true;
-	} catch (SQLException e) {
-	    // already saved!
-	    stored = false;
-	} catch (Exception e) {
-	    stored = false;
+    /*
+     * Executes a lookup query for a chunk of hashes, adding all translations
+     * found onto the given map.
+     */
+    private void find(PreparedStatement stmnt, List<TextKey> chunk,
+	    String code, Map<TextKey, String> found) throws SQLException {
+	// Check primary key (language code + hashes of texts)
+	stmnt.setString(1, code);
+	for (int i = 0; i < chunk.size(); i++) {
+	    stmnt.setBytes(i + 2, chunk.get(i).getBytes());
 	}
 
-	return stored;
+	try (ResultSet rs = stmnt.executeQuery()) {
+	    while (rs.next()) {
+		found.put(new TextKey(rs.getBytes("hash")), rs.getString("text"));
+	    }
+	}
     }
 
-    /**
-     * Checks whether a given text has already been translated into a given
-     * language and saved into the database. If so, its retrieves the
-     * translation.
-     * 
-     * @param text:     text in its original language
-     * @param language: language code
-     * 
-     * @return String representing the translation into the language of said
-     *         text, null otherwise
-     * 
-     * @throws TranslationException due to SQL or hashing error (retrieving a
-     *                              translation from the cache)
+    /*
+     * Retrieves a numeric cache setting, or its default value if not valid.
      */
-    private String getTranslation(String text, String language)
-	    throws TranslationException {
-	String trans = null;
+    private int getSetting(Properties settings, String name, int def) {
+	return (int) getSetting(settings, name, (long) def);
+    }
 
-	try (PreparedStatement stmnt = getConnection().prepareStatement(FIND)) {
-	    // Check primary key (hash of text + language code)
-	    try {
-		stmnt.setString(1, hash(text));
-	    } catch (NoSuchAlgorithmException e) {
-		// Not possible to retrieve translation
-		return null;
-	    } // PK
-	    stmnt.setString(2, language.toLowerCase().replace("-", "_"));
+    private long getSetting(Properties settings, String name, long def) {
+	try {
+	    return Long.valueOf(settings.getProperty(name).trim());
+	} catch (Exception e) {
+	    return def;
+	}
+    }
 
-	    ResultSet rs = stmnt.executeQuery();
-	    if (rs.next()) {
-		trans = rs.getString("text");
-	    }
+    private double getSetting(Properties settings, String name, double def) {
+	try {
+	    return Double.valueOf(settings.getProperty(name).trim());
 	} catch (Exception e) {
-	    // Nothing found :(
+	    return def;
 	}
+    }
 
-	return trans;
+    /*
+     * Number of records effectively written by a batch (ignored ones, already
+     * found in the database, are not counted). Those known to be written are
+     * kept track of.
+     */
+    private int count(int[] updates, List<CacheEntry> batch,
+	    List<CacheEntry> written) {
+	int count = 0;
+	for (int i = 0; i < updates.length; i++) {
+	    if (updates[i] > 0) {
+		written.add(batch.get(i));
+	    }
+	    if (updates[i] > 0 || updates[i] == Statement.SUCCESS_NO_INFO) {
+		count++;
+	    }
+	}
+	return count;
+    }
+
+    /*
+     * Closes a statement, if existing.
+     */
+    private void close(Statement stmnt) {
+	try {
+	    if (stmnt != null) {
+		stmnt.close();
+	    }
+	} catch (SQLException e) {
+	    return;
+	}
+    }
+
+    /*
+     * Language code, as stored in the database (i.e. en_us).
+     */
+    private String code(String language) {
+	return CacheEntry.code(language);
     }
 
     /**
      * Converts a given text to their hash representation.
      * 
      * @param text to compute the hash of
-     * @return hexadecimal hash representation
+     * @return compact (128-bit) hash representation
      * @throws NoSuchAlgorithmException @ with issues computing hash
      */
-    private String hash(String text) throws NoSuchAlgorithmException {
-	return HashUtil.getHash(text);
+    private TextKey hash(String text) throws NoSuchAlgorithmException {
+	return TextKey.of(text);
     }
 }
@@ -0,0 +1,174 @@
+package main.java.logic.translation.cache;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import main.java.util.resources.PropertyLoader;
+
+/**
+ * Benchmark of the lookups of the translation cache: matches bundles of
+ * several sizes against a cache database (see TranslationCache.match), and
+ * compares it with looking their texts up one by one (one query per key, as
+ * was done before lookups were carried out in bulk).
+ * 
+ * Only a share of the texts of each bundle is found in the cache (half of
+ * them, by default). Each match is run on a cache just opened, so that its
+ * texts are looked up in the database rather than in memory; matching them
+ * again (warm, from memory when they fit in it) is also reported.
+ * 
+ * Usage: TranslationCacheBenchmark [sizes] [hit ratio] [runs], i.e.
+ * TranslationCacheBenchmark 1000,10000,100000 0.5 5
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public class TranslationCacheBenchmark {
+
+    private final static String LANGUAGE = "es";
+    private final static String FIND = "SELECT text_translation as text FROM translation_cache"
+	    + " WHERE text_hash=? and language_code=?";
+
+    public static void main(String[] args) throws Exception {
+	String[] sizes = (args.length > 0 ? args[0] : "1000,10000,100000")
+		.split(",");
+	double ratio = args.length > 1 ? Double.parseDouble(args[1]) : 0.5;
+	int runs = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+	Path dir = Files.createTempDirectory("cachebench");
+	System.out.printf("%8s %8s %12s %12s %9s %12s%n", "size", "hits",
+		"per-key(ms)", "bulk(ms)", "speedup", "warm(ms)");
+	for (String size : sizes) {
+	    run(dir, Integer.parseInt(size.trim()), ratio, runs);
+	}
+	System.exit(0);
+    }
+
+    /*
+     * ######################## AUXILIARY METHODS ##############################
+     */
+
+    private static void run(Path dir, int size, double ratio, int runs)
+	    throws Exception {
+	String url = "jdbc:sqlite:" + Files.createTempFile(dir, "cache", ".db");
+	Properties bundle = getBundle(size);
+	store(url, bundle, (int) Math.round(size * ratio));
+
+	// Warm up
+	lookUp(url, bundle);
+	match(url, bundle, false);
+
+	long perKey = 0, bulk = 0, warm = 0;
+	long hits = 0;
+	for (int run = 0; run < runs; run++) {
+	    long start = System.nanoTime();
+	    int found = lookUp(url, bundle);
+	    perKey += System.nanoTime() - start;
+
+	    start = System.nanoTime();
+	    hits = match(url, bundle, false);
+	    bulk += System.nanoTime() - start;
+
+	    if (found != hits) {
+		throw new IllegalStateException(
+			found + " texts found one by one, " + hits + " in bulk");
+	    }
+	    warm += match(url, bundle, true);
+	}
+
+	System.out.printf("%8d %8d %12.1f %12.1f %8.1fx %12.1f%n", size, hits,
+		perKey / 1e6 / runs, bulk / 1e6 / runs, (double) perKey / bulk,
+		warm / 1e6 / runs);
+    }
+
+    /*
+     * Bundle of a given number of (different) texts, of varied lengths.
+     */
+    private static Properties getBundle(int size) {
+	Properties bundle = new Properties();
+	String[] words = { "file", "open", "save", "translation", "language",
+		"window", "settings", "error", "the", "is", "not", "available" };
+	for (int i = 0; i < size; i++) {
+	    StringBuilder sb = new StringBuilder("Text " + i);
+	    for (int w = 0; w < 3 + i % 12; w++) {
+		sb.append(" ").append(words[(i * 7 + w) % words.length]);
+	    }
+	    bundle.setProperty("gui.cards.app.settings.dialog." + words[i % 7]
+		    + ".button" + i + ".tooltip", sb.toString());
+	}
+	return bundle;
+    }
+
+    /*
+     * Stores the translations of a number of the texts of a bundle.
+     */
+    private static void store(String url, Properties bundle, int count)
+	    throws Exception {
+	List<CacheEntry> entries = new ArrayList<>();
+	for (String key : PropertyLoader.getKeys(bundle)) {
+	    if (entries.size() == count) {
+		break;
+	    }
+	    String text = bundle.getProperty(key);
+	    entries.add(new CacheEntry(TextKey.of(text), LANGUAGE,
+		    "[" + LANGUAGE + "] " + text));
+	}
+	TranslationCache cache = new TranslationCache(null, url);
+	try {
+	    cache.store(entries);
+	} finally {
+	    cache.closeConnection();
+	}
+    }
+
+    /*
+     * Matches a bundle on a cache just opened: returns the number of texts
+     * found, or (if warm) the time taken to match it again.
+     */
+    private static long match(String url, Properties bundle, boolean warm)
+	    throws Exception {
+	TranslationCache cache = new TranslationCache(null, url);
+	try {
+	    long found = cache.match(bundle, LANGUAGE).getTranslated().size();
+	    if (!warm) {
+		return found;
+	    }
+	    long start = System.nanoTime();
+	    cache.match(bundle, LANGUAGE);
+	    return System.nanoTime() - start;
+	} finally {
+	    cache.closeConnection();
+	}
+    }
+
+    /*
+     * Looks the texts of a bundle up one by one (one query per key), returning
+     * the number of them found.
+     */
+    private static int lookUp(String url, Properties bundle) throws Exception {
+	int found = 0;
+	String code = CacheEntry.code(LANGUAGE);
+	try (Connection c = DriverManager.getConnection(url)) {
+	    for (String key : PropertyLoader.getKeys(bundle)) {
+		try (PreparedStatement stmnt = c.prepareStatement(FIND)) {
+		    stmnt.setBytes(1,
+			    TextKey.of(bundle.getProperty(key)).getBytes());
+		    stmnt.setString(2, code);
+		    try (ResultSet rs = stmnt.executeQuery()) {
+			if (rs.next()) {
+			    found++;
+			}
+		    }
+		}
+	    }
+	}
+	return found;
+    }
+
+}
@@ -0,0 +1,449 @@
+package main.java.logic.translation.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory index of the (normalized) original texts found in the translation
+ * cache, used to find those similar to a given text rather than just equal to
+ * it: i.e. "Save file" and "Save files".
+ * 
+ * Similarity is measured as the Jaccard index of the sets of character
+ * trigrams of both texts. In order not to compare a text with every other one,
+ * texts are indexed through MinHash signatures split into bands (locality
+ * sensitive hashing): only those texts sharing, at least, one band with the
+ * given one are compared with it.
+ * 
+ * Entries are kept in plain arrays (chained hash tables of entry ids, one per
+ * band), so that it can hold millions of texts. Removed texts (i.e. once none
+ * of their translations is left in the cache) are just marked as such, and
+ * restored if indexed again. There is a single index per database. All of its
+ * operations are thread-safe.
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public class TranslationMemory implements EvictionListener {
+
+    private final static Map<String, TranslationMemory> memories = new HashMap<>();
+
+    // MinHash: BANDS x ROWS hash functions
+    private final static int BANDS = 6;
+    private final static int ROWS = 3;
+    private final static long[] SEEDS = new long[BANDS * ROWS];
+    static {
+	long seed = 0x9E3779B97F4A7C15L;
+	for (int i = 0; i < SEEDS.length; i++) {
+	    seed = mix(seed + i);
+	    SEEDS[i] = seed;
+	}
+    }
+
+    private final static int INITIAL_CAPACITY = 1024;
+
+    // Max. number of texts compared with the given one, per lookup
+    private final static int MAX_COMPARED = 256;
+
+    // Entries (removed ones have no source)
+    private int size = 0;
+    private int removed = 0;
+    private TextKey[] keys = new TextKey[INITIAL_CAPACITY];
+    private String[] sources = new String[INITIAL_CAPACITY];
+
+    // Bands: hash of each entry, and chained hash table of entries
+    private int[][] bandHashes = new int[BANDS][INITIAL_CAPACITY];
+    private int[][] next = new int[BANDS][INITIAL_CAPACITY];
+    private int[][] heads = newHeads(BANDS, INITIAL_CAPACITY);
+
+    // Keys: chained hash table of entries (to avoid indexing a text twice)
+    private int[] keyNext = new int[INITIAL_CAPACITY];
+    private int[] keyHeads = newHeads(1, INITIAL_CAPACITY)[0];
+
+    private volatile boolean loaded = false;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Retrieves the translation memory of a database, creating it (empty) if
+     * it did not exist.
+     * 
+     * @param url JDBC url of the cache database
+     * @return translation memory of the database
+     */
+    public static synchronized TranslationMemory get(String url) {
+	TranslationMemory memory = memories.get(url);
+	if (memory == null) {
+	    memory = new TranslationMemory();
+	    memories.put(url, memory);
+	}
+	return memory;
+    }
+
+    /**
+     * @return boolean true if all original texts of the database have already
+     *         been indexed
+     */
+    public boolean isLoaded() {
+	return loaded;
+    }
+
+    public void setLoaded(boolean loaded) {
+	this.loaded = loaded;
+    }
+
+    /**
+     * @return number of texts indexed
+     */
+    public int size() {
+	lock.readLock().lock();
+	try {
+	    return size - removed;
+	} finally {
+	    lock.readLock().unlock();
+	}
+    }
+
+    /**
+     * Indexes an original text (if not already indexed).
+     * 
+     * @param key    key of the original text
+     * @param source normalized original text
+     */
+    public void add(TextKey key, String source) {
+	int[] bands = getBands(source);
+
+	lock.writeLock().lock();
+	try {
+	    int found = indexOf(key);
+	    if (found >= 0) {
+		if (sources[found] == null) { // Removed
+		    sources[found] = source;
+		    removed--;
+		}
+		return; // Already indexed
+	    }
+
+	    if (size == keys.length) {
+		grow();
+	    }
+	    int id = size++;
+	    keys[id] = key;
+	    sources[id] = source;
+	    linkKey(id);
+	    for (int b = 0; b < BANDS; b++) {
+		bandHashes[b][id] = bands[b];
+		link(b, id);
+	    }
+	} finally {
+	    lock.writeLock().unlock();
+	}
+    }
+
+    /**
+     * Finds the indexed texts most similar to a given one. In order to bound
+     * the time spent, at most MAX_COMPARED texts (per band) are looked at.
+     * 
+     * @param source        normalized text
+     * @param max           max. number of texts to find
+     * @param minSimilarity min. similarity (0-1) of the texts to find
+     * @return most similar texts, sorted from most to least similar
+     */
+    public List<Candidate> find(String source, int max, double minSimilarity) {
+	List<Candidate> found = new ArrayList<>();
+	if (max <= 0) {
+	    return found;
+	}
+
+	int[] bands = getBands(source);
+	Set<Integer> seen = new HashSet<>();
+	int[] trigrams = null;
+
+	lock.readLock().lock();
+	try {
+	    for (int b = 0; b < BANDS && seen.size() < MAX_COMPARED; b++) {
+		int hash = bands[b];
+		int steps = 0; // Texts sharing a band may be many
+		for (int id = heads[b][hash & mask()]; id >= 0
+			&& steps++ < MAX_COMPARED
+			&& seen.size() < MAX_COMPARED; id = next[b][id]) {
+		    if (bandHashes[b][id] != hash || sources[id] == null
+			    || !seen.add(id)) {
+			continue;
+		    }
+		    if (trigrams == null) {
+			trigrams = getTrigrams(source);
+		    }
+		    // Too short to be similar enough (a text of n chars has,
+		    // at most, n trigrams)
+		    if (sources[id].length() < minSimilarity * trigrams.length) {
+			continue;
+		    }
+		    double similarity = similarity(source, trigrams,
+			    sources[id]);
+		    if (similarity >= minSimilarity) {
+			found.add(new Candidate(keys[id], sources[id],
+				similarity));
+		    }
+		}
+	    }
+	} finally {
+	    lock.readLock().unlock();
+	}
+
+	found.sort((c1, c2) -> Double.compare(c2.getSimilarity(),
+		c1.getSimilarity()));
+	return found.size() > max ? found.subList(0, max) : found;
+    }
+
+    /**
+     * Removes an indexed text (if indexed).
+     * 
+     * @param key key of the original text
+     */
+    public void remove(TextKey key) {
+	lock.writeLock().lock();
+	try {
+	    int id = indexOf(key);
+	    if (id >= 0 && sources[id] != null) {
+		sources[id] = null;
+		removed++;
+	    }
+	} finally {
+	    lock.writeLock().unlock();
+	}
+    }
+
+    /**
+     * Removes an original text once none of its translations is left in the
+     * database.
+     */
+    @Override
+    public void evicted(TextKey key, String language, boolean last) {
+	if (last) {
+	    remove(key);
+	}
+    }
+
+    /**
+     * Removes all indexed texts.
+     */
+    public void clear() {
+	lock.writeLock().lock();
+	try {
+	    size = 0;
+	    removed = 0;
+	    keys = new TextKey[INITIAL_CAPACITY];
+	    sources = new String[INITIAL_CAPACITY];
+	    bandHashes = new int[BANDS][INITIAL_CAPACITY];
+	    next = new int[BANDS][INITIAL_CAPACITY];
+	    heads = newHeads(BANDS, INITIAL_CAPACITY);
+	    keyNext = new int[INITIAL_CAPACITY];
+	    keyHeads = newHeads(1, INITIAL_CAPACITY)[0];
+	    loaded = false;
+	} finally {
+	    lock.writeLock().unlock();
+	}
+    }
+
+    /*
+     * ######################## AUXILIARY METHODS ##############################
+     */
+
+    private int mask() {
+	return heads[0].length - 1;
+    }
+
+    /*
+     * Id of the entry of a text, -1 if not indexed. Must be called while
+     * holding the lock.
+     */
+    private int indexOf(TextKey key) {
+	for (int id = keyHeads[key.hashCode() & mask()]; id >= 0; id = keyNext[id]) {
+	    if (keys[id].equals(key)) {
+		return id;
+	    }
+	}
+	return -1;
+    }
+
+    private static int[][] newHeads(int tables, int capacity) {
+	int[][] heads = new int[tables][capacity];
+	for (int[] h : heads) {
+	    Arrays.fill(h, -1);
+	}
+	return heads;
+    }
+
+    private void linkKey(int id) {
+	int bucket = keys[id].hashCode() & mask();
+	keyNext[id] = keyHeads[bucket];
+	keyHeads[bucket] = id;
+    }
+
+    private void link(int band, int id) {
+	int bucket = bandHashes[band][id] & mask();
+	next[band][id] = heads[band][bucket];
+	heads[band][bucket] = id;
+    }
+
+    /*
+     * Doubles the capacity of the index, rehashing all of its entries.
+     */
+    private void grow() {
+	int capacity = keys.length * 2;
+	keys = Arrays.copyOf(keys, capacity);
+	sources = Arrays.copyOf(sources, capacity);
+	heads = newHeads(BANDS, capacity);
+	keyHeads = newHeads(1, capacity)[0];
+	keyNext = new int[capacity];
+	for (int id = 0; id < size; id++) {
+	    linkKey(id);
+	}
+	for (int b = 0; b < BANDS; b++) {
+	    bandHashes[b] = Arrays.copyOf(bandHashes[b], capacity);
+	    next[b] = new int[capacity];
+	    for (int id = 0; id < size; id++) {
+		link(b, id);
+	    }
+	}
+    }
+
+    /*
+     * MinHash signature of the trigrams of a text, folded into one hash per
+     * band.
+     */
+    private static int[] getBands(String source) {
+	long[] signature = new long[SEEDS.length];
+	Arrays.fill(signature, Long.MAX_VALUE);
+	String padded = " " + source.toLowerCase() + " ";
+
+	int n = Math.max(1, padded.length() - 2);
+	for (int i = 0; i < n; i++) {
+	    long trigram = trigram(padded, i);
+	    for (int h = 0; h < SEEDS.length; h++) {
+		long value = mix(trigram ^ SEEDS[h]);
+		if (value < signature[h]) {
+		    signature[h] = value;
+		}
+	    }
+	}
+
+	int[] bands = new int[BANDS];
+	for (int b = 0; b < BANDS; b++) {
+	    long hash = b;
+	    for (int r = 0; r < ROWS; r++) {
+		hash = mix(hash * 31 + signature[b * ROWS + r]);
+	    }
+	    bands[b] = (int) (hash ^ (hash >>> 32));
+	}
+	return bands;
+    }
+
+    /*
+     * Sorted (hashes of the) distinct trigrams of a text.
+     */
+    private static int[] getTrigrams(String source) {
+	String padded = " " + source.toLowerCase() + " ";
+	int n = Math.max(1, padded.length() - 2);
+	int[] trigrams = new int[n];
+	for (int i = 0; i < n; i++) {
+	    trigrams[i] = (int) mix(trigram(padded, i));
+	}
+	Arrays.sort(trigrams);
+
+	int distinct = 1;
+	for (int i = 1; i < n; i++) {
+	    if (trigrams[i] != trigrams[distinct - 1]) {
+		trigrams[distinct++] = trigrams[i];
+	    }
+	}
+	return distinct == n ? trigrams : Arrays.copyOf(trigrams, distinct);
+    }
+
+    private static long trigram(String padded, int i) {
+	long trigram = 0;
+	for (int j = i; j < Math.min(i + 3, padded.length()); j++) {
+	    trigram = (trigram << 16) | padded.charAt(j);
+	}
+	return trigram;
+    }
+
+    /*
+     * Jaccard index of the trigrams of two texts. Only equal texts are 100%
+     * similar.
+     */
+    private static double similarity(String source, int[] trigrams,
+	    String other) {
+	if (source.equals(other)) {
+	    return 1;
+	}
+	int[] others = getTrigrams(other);
+	int common = 0;
+	for (int i = 0, j = 0; i < trigrams.length && j < others.length;) {
+	    if (trigrams[i] == others[j]) {
+		common++;
+		i++;
+		j++;
+	    } else if (trigrams[i] < others[j]) {
+		i++;
+	    } else {
+		j++;
+	    }
+	}
+	int union = trigrams.length + others.length - common;
+	return Math.min(0.999, (double) common / union);
+    }
+
+    /*
+     * 64-bit finalizer (SplitMix64).
+     */
+    private static long mix(long z) {
+	z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+	z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+	return z ^ (z >>> 31);
+    }
+
+    /**
+     * Indexed text similar to a given one.
+     */
+    public static class Candidate {
+
+	private final TextKey key;
+	private final String source;
+	private final double similarity;
+
+	private Candidate(TextKey key, String source, double similarity) {
+	    this.key = key;
+	    this.source = source;
+	    this.similarity = similarity;
+	}
+
+	/**
+	 * @return key of the original text
+	 */
+	public TextKey getKey() {
+	    return key;
+	}
+
+	/**
+	 * @return normalized original text
+	 */
+	public String getSource() {
+	    return source;
+	}
+
+	/**
+	 * @return similarity (0-1) with the given text
+	 */
+	public double getSimilarity() {
+	    return similarity;
+	}
+    }
+
+}
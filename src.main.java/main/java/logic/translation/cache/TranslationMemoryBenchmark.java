@@ -0,0 +1,179 @@
+package main.java.logic.translation.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import main.java.util.resources.TextUtil;
+
+/**
+ * Benchmark of the lookups of the translation memory (see TranslationMemory):
+ * indexes a large number of texts (1M by default) and reports how long
+ * indexing them takes, the heap they use, and the latency percentiles of
+ * finding the texts similar to a given one.
+ * 
+ * Lookups are run on two bundles of distinct texts: one of mixed vocabulary
+ * (texts of random words, out of thousands of them), and a worst case one, of
+ * heavily near-duplicated texts (a few templates with different numbers and
+ * names), where many texts share bands with the given one. Looked up texts
+ * are variants (one word changed) of indexed ones, and new texts, half and
+ * half.
+ * 
+ * Usage: TranslationMemoryBenchmark [entries] [lookups], i.e.
+ * TranslationMemoryBenchmark 1000000 10000
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public class TranslationMemoryBenchmark {
+
+    private final static long SEED = 42;
+    private final static int CANDIDATES = 3;
+    private final static double MIN_SIMILARITY = 0.7;
+
+    private final static int VOCABULARY = 5000;
+    private final static String[] SYLLABLES = { "ba", "ce", "di", "fo", "gu",
+	    "la", "me", "ni", "po", "ru", "sa", "te", "vi", "zo", "an", "er",
+	    "in", "on", "us", "tra", "pre", "con", "ex", "ti" };
+
+    // Name (1) and number (2) in each of them
+    private final static String[] TEMPLATES = { "Save file %2$d of %1$s",
+	    "Open the %1$s folder (%2$d items)",
+	    "Error %2$d: %1$s could not be loaded", "%1$s has %2$d new messages" };
+
+    public static void main(String[] args) throws Exception {
+	int entries = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+	int lookups = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+
+	System.out.printf("%-10s %9s %9s %9s %9s %9s %9s %9s %7s%n", "bundle",
+		"entries", "index(s)", "heap(MB)", "mean(us)", "p50(us)",
+		"p99(us)", "max(us)", "hits");
+	run("mixed", entries, lookups, false);
+	run("templated", entries, lookups, true);
+    }
+
+    /*
+     * ######################## AUXILIARY METHODS ##############################
+     */
+
+    private static void run(String name, int entries, int lookups,
+	    boolean templated) throws Exception {
+	Random random = new Random(SEED);
+	String[] words = getWords(random);
+	Set<String> texts = new LinkedHashSet<>();
+	while (texts.size() < entries) {
+	    texts.add(TextUtil.normalize(templated ? getTemplated(words, random)
+		    : getMixed(words, random)));
+	}
+
+	// Index
+	long heap = getUsedHeap();
+	TranslationMemory memory = new TranslationMemory();
+	long start = System.nanoTime();
+	for (String source : texts) {
+	    memory.add(TextKey.of(source), source);
+	}
+	double indexTime = (System.nanoTime() - start) / 1e9;
+	texts = null;
+	heap = getUsedHeap() - heap;
+
+	// Look up (variants of indexed texts, and new texts)
+	random = new Random(SEED);
+	List<String> queries = new ArrayList<>(lookups);
+	for (int i = 0; i < lookups; i++) {
+	    String text = templated ? getTemplated(words, random)
+		    : getMixed(words, random);
+	    queries.add(TextUtil.normalize(
+		    i % 2 == 0 ? getVariant(text, words, random)
+			    : getMixed(words, random)));
+	}
+	for (String query : queries.subList(0, Math.min(1000, lookups))) {
+	    memory.find(query, CANDIDATES, MIN_SIMILARITY); // Warm up
+	}
+
+	long[] latencies = new long[lookups];
+	int hits = 0;
+	for (int i = 0; i < lookups; i++) {
+	    start = System.nanoTime();
+	    if (!memory.find(queries.get(i), CANDIDATES, MIN_SIMILARITY)
+		    .isEmpty()) {
+		hits++;
+	    }
+	    latencies[i] = (System.nanoTime() - start) / 1000;
+	}
+	Arrays.sort(latencies);
+
+	System.out.printf("%-10s %9d %9.1f %9d %9.1f %9d %9d %9d %7d%n", name,
+		memory.size(), indexTime, heap / (1024 * 1024),
+		Arrays.stream(latencies).average().orElse(0),
+		getPercentile(latencies, 50), getPercentile(latencies, 99),
+		latencies[lookups - 1], hits);
+    }
+
+    /*
+     * Vocabulary of made-up words, of 2 to 4 syllables.
+     */
+    private static String[] getWords(Random random) {
+	Set<String> words = new LinkedHashSet<>();
+	while (words.size() < VOCABULARY) {
+	    StringBuilder sb = new StringBuilder();
+	    for (int s = 0, n = 2 + random.nextInt(3); s < n; s++) {
+		sb.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+	    }
+	    words.add(sb.toString());
+	}
+	return words.toArray(new String[0]);
+    }
+
+    /*
+     * Text of 2 to 10 random words.
+     */
+    private static String getMixed(String[] words, Random random) {
+	StringBuilder sb = new StringBuilder();
+	int length = 2 + random.nextInt(9);
+	for (int w = 0; w < length; w++) {
+	    if (w > 0) {
+		sb.append(" ");
+	    }
+	    sb.append(words[random.nextInt(words.length)]);
+	}
+	return sb.toString();
+    }
+
+    /*
+     * Text of one of a few templates, with a random name and number.
+     */
+    private static String getTemplated(String[] words, Random random) {
+	return String.format(TEMPLATES[random.nextInt(TEMPLATES.length)],
+		words[random.nextInt(words.length)], random.nextInt(100000));
+    }
+
+    /*
+     * Same text, with one of its words replaced.
+     */
+    private static String getVariant(String text, String[] words,
+	    Random random) {
+	String[] split = text.split(" ");
+	split[random.nextInt(split.length)] = words[random
+		.nextInt(words.length)];
+	return String.join(" ", split);
+    }
+
+    private static long getUsedHeap() throws InterruptedException {
+	Runtime runtime = Runtime.getRuntime();
+	for (int i = 0; i < 3; i++) {
+	    System.gc();
+	    Thread.sleep(100);
+	}
+	return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long getPercentile(long[] sorted, int percentile) {
+	int i = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+	return sorted[Math.max(0, i)];
+    }
+
+}
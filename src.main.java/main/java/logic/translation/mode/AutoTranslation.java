@@ -1,15 +1,35 @@
 package main.java.logic.translation.mode;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import main.java.logic.file.locales.LocaleFile;
+import main.java.logic.translation.api.ApiResults;
 import main.java.logic.translation.api.ApiTranslation;
+import main.java.logic.translation.api.SingleFlightTranslation;
+import main.java.logic.translation.api.TranslationListener;
 import main.java.logic.translation.api.openai.OpenAIApiTranslation;
+import main.java.logic.translation.cache.CacheMatch;
 import main.java.logic.translation.cache.TranslationCache;
 import main.java.util.exception.ResourceException;
 import main.java.util.exception.TranslationException;
 import main.java.util.resources.PropertyLoader;
+import main.java.util.resources.ResourceLoader;
 
 /**
  * Automatic translation mode (translates content to a specific language via
@@ -21,16 +41,34 @@ import main.java.util.resources.PropertyLoader;
  */
 public class AutoTranslation implements TranslationMode {
 
-    private ApiTranslation api;
-    private TranslationCache cache;
+    private final static Logger LOGGER = Logger
+	    .getLogger(AutoTranslation.class.getName());
+    private final static int DEFAULT_FILE_WORKERS = 4;
+
+    // Cache lookups and writes in progress
+    private final static ExecutorService tasks = Executors
+	    .newCachedThreadPool(r -> {
+		Thread t = new Thread(r, "auto-translation");
+		t.setDaemon(true);
+		return t;
+	    });
+
+    private final ApiTranslation api;
+    private final TranslationCache cache;
+
+    // Max. number of target files translated at the same time
+    private final int workers = getWorkers();
 
     // Source file
     private LocaleFile source;
-    private LocaleFile target;
+
+    // Progress of translations (as they are received)
+    private volatile TranslationListener listener;
 
     public AutoTranslation(LocaleFile localeFile)
 	    throws ResourceException, SQLException {
-	this.api = new OpenAIApiTranslation(); // API access
+	// API access (same texts in flight are only requested once)
+	this.api = new SingleFlightTranslation(new OpenAIApiTranslation());
 	this.cache = new TranslationCache(); // Translation database
 	this.source = localeFile;
     }
@@ -43,71 +81,236 @@ public class AutoTranslation implements TranslationMode {
     }
 
     /**
-     * Executes the automatic API translation process, from a given input file:
+     * Translates a target file, and waits for the result (see
+     * translateAsync).
+     * 
+     * @param target target file to translate
+     * @return results of automatic translation
+     * 
+     * @throws TranslationException as a result of issues with translation API
+     *                              access, timeouts, interruptions
+     */
+    @Override
+    public Properties translate(LocaleFile target) throws TranslationException {
+	return ApiTranslation.await(translateAsync(target));
+    }
+
+    /**
+     * Executes the automatic API translation process, from a given input file,
+     * in the background:
      * 
      * - 1. Establishes the target language. (In the case that it is the same as
      * the source one, no translation process is done!)
      * 
      * - 2. Accesses LL to carry out automatic translation. (In case of
      * translations having already been carried out in the past, result is
-     * retrieved directly from the caché).
+     * retrieved directly from the caché; and repeated texts are only
+     * translated once).
      * 
      * - 3. Retrieves results.
      * 
      * - 4. Updates caché with new translations.
      * 
-     * @param target target file to translate
-     * @return results of automatic translation
+     * No state is kept in between, so that several target files can be
+     * translated at the same time (their cache lookups, API calls and cache
+     * updates overlapping).
      * 
-     * @throws TranslationException as a result of issues with translation API
-     *                              access, timeouts, interruptions
+     * @param target target file to translate
+     * @return future of the results of automatic translation; completed
+     *         exceptionally with a TranslationException as a result of issues
+     *         with translation API access, timeouts, interruptions
      */
-    @Override
-    public Properties translate(LocaleFile target) throws TranslationException {
-	// New current target file
-	this.target = target;
-	Properties results;
+    public CompletableFuture<Properties> translateAsync(LocaleFile target) {
+	LocaleFile source = this.source;
 
 	// If they are the same language, return the same content
 	if (areSameLanguage(source, target)) {
-	    results = source.getContent();
-	    target.setContent(results);
+	    target.setContent(source.getContent());
+	    return CompletableFuture.completedFuture(source.getContent());
+	}
+
+	// Checks whether some translations have already been made
+	return supply(() -> fromCache(source, target)).thenCompose(
+		// Translate strictly those that have never been translated
+		match -> getApiResults(match, source.getLanguage(), target)
+			.thenCompose(translated -> {
+			    Properties results = getAutoResults(match,
+				    translated.getTranslated());
+			    target.setContent(results);
+			    // Update cache
+			    return supply(() -> {
+				toCache(source, target, translated);
+				return results;
+			    });
+			}));
+    }
+
+    /**
+     * Executes the automatic API translation process into several target
+     * files. If the API is multi-language, the texts not found in the cache
+     * (for any of them) are translated into all their languages at once, so
+     * that they are only sent once; otherwise, several files are translated
+     * at the same time (up to a max. number of workers), each of them on its
+     * own (see translateAsync).
+     * 
+     * A failure translating a file does not stop the rest of them: all of
+     * them are attempted, and the languages of those that failed are reported
+     * at the end.
+     * 
+     * @param targets target files to translate
+     * 
+     * @throws TranslationException with the languages of the target files that
+     *                              could not be translated, as a result of
+     *                              issues with translation API access,
+     *                              timeouts, interruptions
+     */
+    @Override
+    public void translateAll(List<LocaleFile> targets)
+	    throws TranslationException {
+	Map<LocaleFile, Throwable> failures = new LinkedHashMap<>();
+	if (api.isMultiLanguage() && targets.size() > 1) {
+	    try {
+		ApiTranslation.await(translateAllAsync(targets));
+	    } catch (TranslationException e) {
+		for (LocaleFile target : targets) {
+		    failures.put(target, e);
+		}
+	    }
 	} else {
-	    // Checks whether some translations have already been made
-	    fromCache();
-	    // Translate strictly those that have never been translated before
-	    results = getAutoResults(source.getLanguage(),
-		    target.getLanguage());
-	    target.setContent(results);
-	    // Update cache
-	    toCache();
+	    translateEach(targets, failures);
 	}
 
-	// Retrieve results
-	return results;
+	if (!failures.isEmpty()) {
+	    List<String> languages = new ArrayList<>();
+	    for (Map.Entry<LocaleFile, Throwable> e : failures.entrySet()) {
+		languages.add(e.getKey().getLanguage());
+		LOGGER.log(Level.WARNING, "Translation into {0} failed: {1}",
+			new Object[] { e.getKey().getLanguage(),
+				e.getValue().getClass().getSimpleName() });
+	    }
+	    throw new TranslationException(languages);
+	}
     }
 
     /**
-     * Resets the auto translation process - but not its cache.
+     * Resets the auto translation process, and closes the connections to its
+     * cache (its translations are kept).
      */
     @Override
     public void reset() {
 	source = null;
-	target = null;
+	cache.closeConnection();
+    }
+
+    /**
+     * Sets the listener of the translations received from the API. If the API
+     * is streaming, it is notified of each of them as soon as it is received
+     * (and so is the content of the target file).
+     * 
+     * @param listener of translations (null for none)
+     */
+    public void setListener(TranslationListener listener) {
+	this.listener = listener;
+    }
+
+    /*
+     * ######################## AUXILIARY METHODS ##############################
+     */
+
+    /*
+     * Translates several target files at the same time (up to the max. number
+     * of workers), and collects the failures of those that could not be
+     * translated.
+     */
+    private void translateEach(List<LocaleFile> targets,
+	    Map<LocaleFile, Throwable> failures) throws TranslationException {
+	Semaphore free = new Semaphore(workers);
+	List<CompletableFuture<Properties>> translations = new ArrayList<>();
+	try {
+	    for (LocaleFile target : targets) {
+		free.acquire();
+		translations.add(translateAsync(target)
+			.whenComplete((results, e) -> free.release()));
+	    }
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new TranslationException();
+	}
+
+	for (int i = 0; i < translations.size(); i++) {
+	    try {
+		translations.get(i).join();
+	    } catch (CompletionException e) {
+		failures.put(targets.get(i),
+			e.getCause() != null ? e.getCause() : e);
+	    }
+	}
+    }
+
+    /*
+     * Translates several target files with multi-language requests: the cache
+     * is looked up for all of them at once, and so it is updated.
+     */
+    private CompletableFuture<Void> translateAllAsync(List<LocaleFile> targets) {
+	LocaleFile source = this.source;
+
+	// Checks which translations have already been made, per language
+	Map<LocaleFile, CompletableFuture<CacheMatch>> lookups = new LinkedHashMap<>();
+	for (LocaleFile t : targets) {
+	    if (areSameLanguage(source, t)) {
+		t.setContent(source.getContent());
+	    } else {
+		lookups.put(t, supply(() -> fromCache(source, t)));
+	    }
+	}
+
+	return allOf(lookups.values()).thenCompose(v -> {
+	    Map<LocaleFile, CacheMatch> matches = new LinkedHashMap<>();
+	    for (Map.Entry<LocaleFile, CompletableFuture<CacheMatch>> e : lookups
+		    .entrySet()) {
+		matches.put(e.getKey(), e.getValue().join());
+	    }
+
+	    // Translate those never translated before (into any language)
+	    return getApiResults(matches, source.getLanguage())
+		    .thenCompose(translated -> {
+			List<CompletableFuture<Properties>> updates = new ArrayList<>();
+			for (Map.Entry<LocaleFile, CacheMatch> e : matches
+				.entrySet()) {
+			    LocaleFile target = e.getKey();
+			    Properties own = getOwnResults(e.getValue(),
+				    translated.get(target.getLanguage()));
+			    target.setContent(
+				    getAutoResults(e.getValue(), own));
+			    // Update cache
+			    updates.add(supply(() -> {
+				toCache(source, target, new ApiResults(own));
+				return own;
+			    }));
+			}
+			return allOf(updates);
+		    });
+	});
     }
 
     /**
      * If any, saves API results onto translation cache (if not found in the
      * database!).
      * 
-     * @throws TranslationException as a result of issues with translation API
-     *                              access, timeouts, interruptions
-     * 
+     * @param source     source file
+     * @param target     target file
+     * @param translated API results
      */
-    private void toCache() throws TranslationException {
-	if (api.getResults() != null) {
-	    cache.storeAll(api.getResults(), source.getContent(),
-		    target.getCode());
+    private void toCache(LocaleFile source, LocaleFile target,
+	    ApiResults translated) {
+	Properties stored = new Properties();
+	stored.putAll(translated.getTranslated());
+	// Those received from others' requests are stored by them
+	for (String key : translated.getShared()) {
+	    stored.remove(key);
+	}
+	if (!stored.isEmpty()) {
+	    cache.storeAll(stored, source.getContent(), target.getCode());
 	}
     }
 
@@ -115,11 +318,15 @@ public class AutoTranslation implements TranslationMode {
      * Retrieves those values already translated and present in the database,
      * and sets the group of properties to be translated and sent to the API.
      * 
+     * @param source source file
+     * @param target target file
+     * @return translations found in the cache, and properties not found
      * @throws TranslationException in case of error when accessing the database
      *                              or retrieving past translations
      */
-    private void fromCache() throws TranslationException {
-	cache.match(source.getContent(), target.getCode());
+    private CacheMatch fromCache(LocaleFile source, LocaleFile target)
+	    throws TranslationException {
+	return cache.match(source.getContent(), target.getCode());
     }
 
     /**
@@ -127,36 +334,200 @@ public class AutoTranslation implements TranslationMode {
      * it either does/doesn't request translations to the API, for optimization
      * of performance.
      * 
+     * Texts repeated under several keys are only requested once, and their
+     * translation is then copied onto all of them.
+     * 
+     * @param match      translations found/not found in the cache
      * @param sourceLang format "Arabic (Palestine)" or "Arabic"
-     * @param language   format "English (United Kingdom)" or "English"
-     * @return combined results (cache, API...) @ in case of error with API
-     *         translation
+     * @param target     target file, whose language is of format "English
+     *                   (United Kingdom)" or "English"
+     * @return future of the API results (empty if there was no need to access
+     *         the API)
+     */
+    private CompletableFuture<ApiResults> getApiResults(CacheMatch match,
+	    String sourceLang, LocaleFile target) {
+
+	// No need to access the API
+	if (match.isComplete()) {
+	    return CompletableFuture
+		    .completedFuture(new ApiResults(new Properties()));
+	}
+
+	// Needs to access the API, once per distinct text
+	String language = target.getLanguage();
+	Deduplicator deduplicator = new Deduplicator(match.getUntranslated());
+	LOGGER.log(Level.INFO, "Deduplication into {0}: {1}",
+		new Object[] { language, deduplicator });
+	Map<LocaleFile, CacheMatch> matches = new LinkedHashMap<>();
+	matches.put(target, match);
+	return api.translateAsync(deduplicator.getUnique(), sourceLang,
+		language, match.getReferences(),
+		getListener(matches, deduplicator)).thenApply(results -> {
+		    Set<String> shared = new HashSet<>();
+		    for (String key : results.getShared()) {
+			shared.addAll(deduplicator.getKeys(key));
+		    }
+		    return new ApiResults(
+			    deduplicator.expand(results.getTranslated()),
+			    shared);
+		});
+    }
+
+    /**
+     * Requests the translation of all the texts not found in the cache into
+     * the languages of several target files at once.
      * 
-     * @throws TranslationException as a result of issues with translation API
-     *                              access, timeouts, interruptions
+     * @param matches    translations found/not found in the cache, per target
+     *                   file
+     * @param sourceLang format "Arabic (Palestine)" or "Arabic"
+     * @return future of the API results, per target language (empty if there
+     *         was no need to access the API)
      */
-    private Properties getAutoResults(String sourceLang, String language)
-	    throws TranslationException {
+    private CompletableFuture<Map<String, Properties>> getApiResults(
+	    Map<LocaleFile, CacheMatch> matches, String sourceLang) {
+	Properties untranslated = new Properties();
+	List<String> languages = new ArrayList<>();
+	Map<String, Properties> references = new LinkedHashMap<>();
+	for (Map.Entry<LocaleFile, CacheMatch> e : matches.entrySet()) {
+	    CacheMatch match = e.getValue();
+	    String language = e.getKey().getLanguage();
+	    if (!match.isComplete() && !languages.contains(language)) {
+		untranslated.putAll(match.getUntranslated());
+		languages.add(language);
+		references.put(language, match.getReferences());
+	    }
+	}
 
 	// No need to access the API
-	if (cache.getUntranslated().isEmpty()) {
-	    return cache.getTranslated();
+	if (untranslated.isEmpty()) {
+	    return CompletableFuture.completedFuture(new LinkedHashMap<>());
+	}
 
-	} else {
-	    // Needs to access the API
-	    api.translate(cache.getUntranslated(), sourceLang, language);
+	// Needs to access the API, once per distinct text
+	Deduplicator deduplicator = new Deduplicator(untranslated);
+	LOGGER.log(Level.INFO, "Deduplication into {0}: {1}",
+		new Object[] { languages, deduplicator });
+	return api.translateAsync(deduplicator.getUnique(), sourceLang,
+		languages, references, getListener(matches, deduplicator))
+		.thenApply(translated -> {
+		    Map<String, Properties> results = new LinkedHashMap<>();
+		    for (String language : languages) {
+			results.put(language,
+				deduplicator.expand(translated.get(language)));
+		    }
+		    return results;
+		});
+    }
 
-	    // Everything has been translated from API
-	    if (cache.getTranslated().isEmpty()) {
-		return api.getResults();
+    /**
+     * Publishes the translations received from the API as soon as possible:
+     * each of them is copied onto all the keys its text is found under, and
+     * included in the content of the target files of its language (along with
+     * those found in the cache).
+     * 
+     * @param matches translations found/not found in the cache, per target
+     *                file
+     * @param dedup   repeated texts
+     * @return listener of the translations received from the API
+     */
+    private TranslationListener getListener(
+	    Map<LocaleFile, CacheMatch> matches, Deduplicator dedup) {
+	Map<LocaleFile, Properties> contents = new LinkedHashMap<>();
+	if (api.isStreaming()) {
+	    for (Map.Entry<LocaleFile, CacheMatch> e : matches.entrySet()) {
+		Properties content = new Properties();
+		content.putAll(e.getValue().getTranslated());
+		e.getKey().setContent(content);
+		contents.put(e.getKey(), content);
+	    }
+	}
 
-		// Both API and cache translations
-	    } else {
-		return PropertyLoader.join(api.getResults(),
-			cache.getTranslated());
+	return (language, key, translation) -> {
+	    for (String k : dedup.getKeys(key)) {
+		for (Map.Entry<LocaleFile, Properties> e : contents
+			.entrySet()) {
+		    if (e.getKey().getLanguage().equals(language) && matches
+			    .get(e.getKey()).getUntranslated().containsKey(k)) {
+			e.getValue().put(k, translation);
+		    }
+		}
+		if (listener != null) {
+		    listener.translated(language, k, translation);
+		}
+	    }
+	};
+    }
+
+    /**
+     * @param match      translations found/not found in the cache for a
+     *                   target file
+     * @param translated API results into its language (null if none)
+     * @return API results of the properties not found in the cache
+     */
+    private Properties getOwnResults(CacheMatch match, Properties translated) {
+	Properties own = new Properties();
+	if (translated != null) {
+	    for (String key : match.getUntranslated().stringPropertyNames()) {
+		String value = translated.getProperty(key);
+		if (value != null) {
+		    own.put(key, value);
+		}
 	    }
 	}
+	return own;
+    }
+
+    /**
+     * @param match      translations found in the cache
+     * @param translated API results
+     * @return combined results (cache, API...)
+     */
+    private Properties getAutoResults(CacheMatch match, Properties translated) {
+	// Everything has been translated from API, or found in the cache
+	if (match.getTranslated().isEmpty()) {
+	    return translated;
+	} else if (translated.isEmpty()) {
+	    return match.getTranslated();
+
+	    // Both API and cache translations
+	} else {
+	    return PropertyLoader.join(translated, match.getTranslated());
+	}
+    }
+
+    /*
+     * Max. number of target files translated at the same time (if not set, the
+     * default one is used).
+     */
+    private static int getWorkers() {
+	try {
+	    return Math.max(1, Integer.valueOf(ResourceLoader.getApiSettings()
+		    .getProperty("_FILE_WORKERS").trim()));
+	} catch (RuntimeException e) {
+	    return DEFAULT_FILE_WORKERS;
+	}
+    }
+
+    /*
+     * Carries out a task in the background, whose future is completed
+     * exceptionally if it fails.
+     */
+    private static <T> CompletableFuture<T> supply(Callable<T> task) {
+	CompletableFuture<T> future = new CompletableFuture<>();
+	tasks.execute(() -> {
+	    try {
+		future.complete(task.call());
+	    } catch (Throwable e) {
+		future.completeExceptionally(e);
+	    }
+	});
+	return future;
+    }
 
+    private static CompletableFuture<Void> allOf(
+	    Collection<? extends CompletableFuture<?>> futures) {
+	return CompletableFuture
+		.allOf(futures.toArray(new CompletableFuture<?>[0]));
     }
 
     /**
@@ -0,0 +1,122 @@
+package main.java.logic.translation.mode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import main.java.util.resources.PropertyLoader;
+import main.java.util.resources.TextUtil;
+
+/**
+ * Groups the properties to translate by their (normalized) value, so that
+ * each distinct text is only translated once, no matter how many keys it is
+ * found under (i.e. "OK", "Cancel"...); its translation is then copied onto
+ * all of them.
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public class Deduplicator {
+
+    // Normalized text -> keys it is found under (the first one represents it)
+    private final Map<String, List<String>> groups = new LinkedHashMap<>();
+    private final Map<String, List<String>> byKey = new HashMap<>();
+    private final Properties unique = new Properties();
+    private final int total;
+
+    /**
+     * @param properties properties to translate
+     */
+    public Deduplicator(Properties properties) {
+	List<String> keys = PropertyLoader.getKeys(properties);
+	Collections.sort(keys); // Same representatives across runs
+	this.total = keys.size();
+
+	for (String key : keys) {
+	    String value = properties.getProperty(key);
+	    List<String> group = groups.computeIfAbsent(
+		    TextUtil.normalize(value), v -> new ArrayList<>());
+	    if (group.isEmpty()) {
+		unique.put(key, value);
+		byKey.put(key, group);
+	    }
+	    group.add(key);
+	}
+    }
+
+    /**
+     * @return one property per distinct text (the rest, under other keys, are
+     *         left out)
+     */
+    public Properties getUnique() {
+	return unique;
+    }
+
+    /**
+     * Copies the translation of each distinct text onto all the keys it is
+     * found under.
+     * 
+     * @param results translations of the distinct texts
+     * @return translations of all properties (those of distinct texts not
+     *         translated are missing)
+     */
+    public Properties expand(Properties results) {
+	Properties expanded = new Properties();
+	if (results == null) {
+	    return expanded;
+	}
+
+	for (List<String> group : groups.values()) {
+	    String translation = results.getProperty(group.get(0));
+	    if (translation != null) {
+		for (String key : group) {
+		    expanded.put(key, translation);
+		}
+	    }
+	}
+	return expanded;
+    }
+
+    /**
+     * @param key key of a distinct text
+     * @return keys the text is found under (empty if it is not a distinct
+     *         text)
+     */
+    public List<String> getKeys(String key) {
+	List<String> group = byKey.get(key);
+	return group == null ? Collections.emptyList() : group;
+    }
+
+    /**
+     * @return number of properties to translate
+     */
+    public int getTotal() {
+	return total;
+    }
+
+    /**
+     * @return number of distinct texts to translate
+     */
+    public int getUniqueCount() {
+	return unique.size();
+    }
+
+    /**
+     * @return ratio (0-1) of properties that do not need to be translated, as
+     *         their text is repeated
+     */
+    public double getRatio() {
+	return total == 0 ? 0 : 1 - (double) unique.size() / total;
+    }
+
+    @Override
+    public String toString() {
+	return String.format("%d of %d texts are repeated (%.1f%%)",
+		total - unique.size(), total, getRatio() * 100);
+    }
+
+}
@@ -1,5 +1,6 @@
 package main.java.logic.translation.mode;
 
+import java.util.List;
 import java.util.Properties;
 
 import main.java.logic.file.locales.LocaleFile;
@@ -25,6 +26,22 @@ public interface TranslationMode {
      */
     public Properties translate(LocaleFile target) throws TranslationException;
 
+    /**
+     * Translates a source file into several target language files. By
+     * default, it is translated into each of them in turn.
+     * 
+     * @param targets files with a specific target language each
+     * 
+     * @throws TranslationException as a result of specific automatic/manual
+     *                              translation exceptions
+     */
+    public default void translateAll(List<LocaleFile> targets)
+	    throws TranslationException {
+	for (LocaleFile target : targets) {
+	    translate(target);
+	}
+    }
+
     /**
      * Resets all associated information in this translation mode.
      */
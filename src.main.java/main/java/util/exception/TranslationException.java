@@ -1,5 +1,7 @@
 package main.java.util.exception;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.ResourceBundle;
 
 /**
@@ -7,6 +9,9 @@ import java.util.ResourceBundle;
  * specifically, during contact with the API for the LLM). For example, when the
  * provided translation file is empty.
  * 
+ * When several target files are translated, it may list the languages of
+ * those that could not be translated (the rest of them being translated).
+ * 
  * @author Adriana R.F. (uo282798@uniovi.es)
  * @version April 2024
  */
@@ -16,6 +21,7 @@ public class TranslationException extends Exception {
 
     private boolean isManual;
     private ResourceBundle messages;
+    private List<String> languages = new ArrayList<>();
 
     public TranslationException() {
 	super();
@@ -31,14 +37,39 @@ public class TranslationException extends Exception {
 	this.messages = messages;
     }
 
+    public TranslationException(List<String> languages) {
+	this(false);
+	this.languages = languages;
+    }
+
+    public TranslationException(ResourceBundle messages,
+	    List<String> languages) {
+	this(languages);
+	this.messages = messages;
+    }
+
     public boolean isManual() {
 	return isManual;
     }
 
+    /**
+     * @return languages of the target files that could not be translated
+     *         (empty if unknown)
+     */
+    public List<String> getFailedLanguages() {
+	return languages;
+    }
+
     @Override
     public String getLocalizedMessage() {
-	if (isManual) {
+	if (messages == null) { // Not (yet) to be shown to the user
+	    return super.getLocalizedMessage();
+	} else if (isManual) {
 	    return messages.getString("error.manual");
+	} else if (!languages.isEmpty()) {
+	    return String.format("%s\n[%s]",
+		    messages.getString("error.translation2"),
+		    String.join(" - ", languages));
 	} else {
 	    return messages.getString("error.automatic");
 	}
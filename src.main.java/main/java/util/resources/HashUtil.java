@@ -1,19 +1,45 @@
 package main.java.util.resources;
 
-import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
 /**
- * Used to compute the 512-bit hash of a string.
+ * Used to compute the 512-bit hash of a string, either in its full hexadecimal
+ * representation or as a compact 128-bit key.
+ * 
+ * Each thread reuses its own digest and encoding buffers, so that hashing a
+ * text does not need to look up the algorithm nor allocate anything but the
+ * resulting key.
+ * 
+ * Compact keys are SHA-512 hashes truncated to 128 bits (as SHA-512/t does),
+ * rather than SHA-256 ones: they are the prefixes of the full hashes stored
+ * before them, so that older caches can be migrated without their texts (see
+ * CacheSchema). SHA-256 may be somewhat faster where the CPU has instructions
+ * for it, but hashing is a small share of a lookup (see TextKeyBenchmark).
+ * 128 bits are plenty for a cache key: a collision is not expected before
+ * some 2^64 distinct texts.
  * 
  * @author Adriana R.F. (uo282798@uniovi.es)
- * @version May 2024
+ * @version June 2024
  */
 public class HashUtil {
 
     // private final static String ALGORITHM = "SHA-256";
     private final static String ALGORITHM = "SHA-512";
+    private final static int DIGEST_LENGTH = 64;
+
+    // Compact keys: first 128 bits of the hash
+    public final static int KEY_LENGTH = 16;
+
+    private final static char[] HEX = "0123456789abcdef".toCharArray();
+
+    // Per-thread digest and buffers
+    private final static ThreadLocal<MessageDigest> DIGEST = new ThreadLocal<>();
+    private final static ThreadLocal<byte[]> TEXT = ThreadLocal
+	    .withInitial(() -> new byte[1024]);
+    private final static ThreadLocal<byte[]> HASH = ThreadLocal
+	    .withInitial(() -> new byte[DIGEST_LENGTH]);
 
     /**
      * @param text to convert into its hash representation
@@ -21,17 +47,131 @@ public class HashUtil {
      * @throws NoSuchAlgorithmException for when hashing algorithm is not found
      */
     public static String getHash(String text) throws NoSuchAlgorithmException {
-	MessageDigest digest = MessageDigest.getInstance(ALGORITHM);
-	byte[] hashBytes = digest.digest(text.getBytes(StandardCharsets.UTF_8));
-	StringBuilder hexadecimal = new StringBuilder();
-
-	for (byte hb : hashBytes) {
-	    String hex = Integer.toHexString(0xff & hb);
-	    if (hex.length() == 1) {
-		hexadecimal.append('0');
+	byte[] hashBytes = digest(text);
+	char[] hexadecimal = new char[DIGEST_LENGTH * 2];
+
+	for (int i = 0; i < DIGEST_LENGTH; i++) {
+	    hexadecimal[2 * i] = HEX[(hashBytes[i] >> 4) & 0xf];
+	    hexadecimal[2 * i + 1] = HEX[hashBytes[i] & 0xf];
+	}
+	return new String(hexadecimal);
+    }
+
+    /**
+     * Computes the compact key of a text: the first 128 bits of its hash. It
+     * is equal to the first 32 hexadecimal characters of getHash(text).
+     * 
+     * @param text to convert into its key
+     * @return 16-byte key
+     * @throws NoSuchAlgorithmException for when hashing algorithm is not found
+     */
+    public static byte[] getKey(String text) throws NoSuchAlgorithmException {
+	byte[] key = new byte[KEY_LENGTH];
+	System.arraycopy(digest(text), 0, key, 0, KEY_LENGTH);
+	return key;
+    }
+
+    /**
+     * @param bytes to convert
+     * @return hexadecimal representation of the bytes
+     */
+    public static String toHex(byte[] bytes) {
+	char[] hexadecimal = new char[bytes.length * 2];
+	for (int i = 0; i < bytes.length; i++) {
+	    hexadecimal[2 * i] = HEX[(bytes[i] >> 4) & 0xf];
+	    hexadecimal[2 * i + 1] = HEX[bytes[i] & 0xf];
+	}
+	return new String(hexadecimal);
+    }
+
+    /**
+     * @param hex hexadecimal representation of a sequence of bytes
+     * @return bytes it represents
+     * @throws IllegalArgumentException if it is not a valid hexadecimal string
+     */
+    public static byte[] fromHex(String hex) {
+	if (hex.length() % 2 != 0) {
+	    throw new IllegalArgumentException(hex);
+	}
+	byte[] bytes = new byte[hex.length() / 2];
+	for (int i = 0; i < bytes.length; i++) {
+	    int high = Character.digit(hex.charAt(2 * i), 16);
+	    int low = Character.digit(hex.charAt(2 * i + 1), 16);
+	    if (high < 0 || low < 0) {
+		throw new IllegalArgumentException(hex);
+	    }
+	    bytes[i] = (byte) ((high << 4) | low);
+	}
+	return bytes;
+    }
+
+    /*
+     * ######################## AUXILIARY METHODS ##############################
+     */
+
+    /*
+     * Hash of the UTF-8 representation of a text, written onto this thread's
+     * buffer (which is overwritten by the next call).
+     */
+    private static byte[] digest(String text) throws NoSuchAlgorithmException {
+	MessageDigest digest = getDigest();
+	int length = encode(text);
+	digest.update(TEXT.get(), 0, length);
+
+	byte[] hash = HASH.get();
+	try {
+	    digest.digest(hash, 0, DIGEST_LENGTH);
+	} catch (DigestException e) {
+	    throw new NoSuchAlgorithmException(e);
+	}
+	return hash;
+    }
+
+    private static MessageDigest getDigest() throws NoSuchAlgorithmException {
+	MessageDigest digest = DIGEST.get();
+	if (digest == null) {
+	    digest = MessageDigest.getInstance(ALGORITHM);
+	    DIGEST.set(digest);
+	}
+	return digest;
+    }
+
+    /*
+     * Encodes a text as UTF-8 onto this thread's buffer (growing it if
+     * needed), without any intermediate allocation.
+     * 
+     * @return number of bytes written
+     */
+    private static int encode(String text) {
+	byte[] buffer = TEXT.get();
+	if (buffer.length < text.length() * 3) {
+	    buffer = new byte[text.length() * 3];
+	    TEXT.set(buffer);
+	}
+
+	int n = 0;
+	for (int i = 0; i < text.length(); i++) {
+	    char c = text.charAt(i);
+	    if (c < 0x80) {
+		buffer[n++] = (byte) c;
+	    } else if (c < 0x800) {
+		buffer[n++] = (byte) (0xc0 | (c >> 6));
+		buffer[n++] = (byte) (0x80 | (c & 0x3f));
+	    } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+		    && Character.isLowSurrogate(text.charAt(i + 1))) {
+		int cp = Character.toCodePoint(c, text.charAt(++i));
+		buffer[n++] = (byte) (0xf0 | (cp >> 18));
+		buffer[n++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+		buffer[n++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+		buffer[n++] = (byte) (0x80 | (cp & 0x3f));
+	    } else if (Character.isSurrogate(c)) {
+		buffer[n++] = '?'; // Malformed, as String.getBytes does
+	    } else {
+		buffer[n++] = (byte) (0xe0 | (c >> 12));
+		buffer[n++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+		buffer[n++] = (byte) (0x80 | (c & 0x3f));
 	    }
-	    hexadecimal.append(hex);
 	}
-	return hexadecimal.toString();
+	return n;
     }
 }
@@ -177,7 +177,8 @@ public class PropertyLoader {
 	List<String> result = PropertyLoader.getValues(texts);
 
 	for (int i = 0; i < keys.size(); i++) {
-	    p = keys.get(i) + "=" + result.get(i);
+	    // Multi-line values are kept in a single line
+	    p = keys.get(i) + "=" + result.get(i).replace("\n", "\\n");
 	    sb.append(p);
 	    if (i < texts.size() - 1) {
 		sb.append("\n");
@@ -34,6 +34,7 @@ public class ResourceLoader {
     private final static String LANGUAGES_FILE = "/locale/languages_en.txt";
     private final static String FONT_FILE = "/img/sf-pro.otf";
     private final static String API_PROPERTIES_FILE = "/properties/api.properties";
+    private final static String CACHE_PROPERTIES_FILE = "/properties/cache.properties";
     private final static String CONFIG_FILE = "/properties/config.properties";
     private final static String DATABASE_NAME = "/database/cache.db";
     private final static String SPEECHCODES_FILE = "/locale/speech-language_codes.txt";
@@ -54,19 +55,36 @@ public class ResourceLoader {
     }
 
     /**
-     * @return api settings for ChatCompletions API
+     * @return api settings for ChatCompletions API (each of them can be
+     *         overridden by a system property "api.<setting>", i.e.
+     *         -Dapi._BASE_URL=http://localhost:8089/)
      */
     public static Properties getApiSettings() throws PropertiesException {
 	try (InputStream is = ResourceLoader.class
 		.getResourceAsStream(API_PROPERTIES_FILE)) {
 	    Properties pr = new Properties();
 	    pr.load(is);
+	    override(pr, "api.");
 	    return pr;
 	} catch (Exception e) {
 	    throw new PropertiesException(API_PROPERTIES_FILE, true);
 	}
     }
 
+    /**
+     * @return settings for the translation cache
+     */
+    public static Properties getCacheSettings() throws PropertiesException {
+	try (InputStream is = ResourceLoader.class
+		.getResourceAsStream(CACHE_PROPERTIES_FILE)) {
+	    Properties pr = new Properties();
+	    pr.load(is);
+	    return pr;
+	} catch (Exception e) {
+	    throw new PropertiesException(CACHE_PROPERTIES_FILE, true);
+	}
+    }
+
     public static String getApiKey() throws ResourceException {
 	return getPropertyFromConfig("API_KEY");
     }
@@ -83,8 +101,29 @@ public class ResourceLoader {
 	return getPropertyFromConfig("AZURE_CV_ENDPOINT");
     }
 
+    /*
+     * Overrides settings with those system properties named after them (with a
+     * given prefix).
+     */
+    private static void override(Properties settings, String prefix) {
+	for (String name : System.getProperties().stringPropertyNames()) {
+	    if (name.startsWith(prefix)) {
+		settings.setProperty(name.substring(prefix.length()),
+			System.getProperty(name));
+	    }
+	}
+    }
+
+    /*
+     * Config properties (i.e. API keys) can be overridden by a system property
+     * "config.<property>".
+     */
     private static String getPropertyFromConfig(String propertyName)
 	    throws ResourceException {
+	String overridden = System.getProperty("config." + propertyName);
+	if (overridden != null) {
+	    return overridden;
+	}
 	try (InputStream is = ResourceLoader.class
 		.getResourceAsStream(CONFIG_FILE)) {
 	    Properties pr = new Properties();
@@ -0,0 +1,30 @@
+package main.java.util.resources;
+
+import java.text.Normalizer;
+import java.util.regex.Pattern;
+
+/**
+ * Used to compare texts (i.e. values of properties) regardless of irrelevant
+ * differences in their representation.
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public class TextUtil {
+
+    private static final Pattern WHITE_SPACES = Pattern.compile("\\s+");
+
+    /**
+     * Normalizes a text, so that texts only differing in their Unicode
+     * representation or in white spaces are considered equal.
+     * 
+     * @param text to normalize
+     * @return normalized text
+     */
+    public static String normalize(String text) {
+	return WHITE_SPACES
+		.matcher(Normalizer.normalize(text, Normalizer.Form.NFKC))
+		.replaceAll(" ").trim();
+    }
+
+}
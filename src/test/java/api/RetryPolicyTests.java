@@ -0,0 +1,261 @@
+package api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import main.java.logic.translation.api.RetryPolicy;
+
+/**
+ * API RETRY TESTING
+ * 
+ * Project unit testing. Retries are simulated: the clock only moves forward
+ * when the policy sleeps, and the jitter is either seeded or fixed.
+ * 
+ * @author Adriana R.F. (uo282798@uniovi.es)
+ * @version June 2024
+ */
+public class RetryPolicyTests {
+
+    private long now;
+    private List<Long> sleeps;
+    private int calls;
+
+    /**
+     * SET UP -----
+     */
+    @BeforeEach
+    public void setUp() throws Exception {
+	now = 0;
+	sleeps = new ArrayList<>();
+	calls = 0;
+    }
+
+    /**
+     * TEST: BACKOFF DOUBLES AFTER EACH ATTEMPT, SHORTENED BY UP TO A HALF
+     */
+    @Test
+    public void test_backoffGrowsWithJitter() throws Exception {
+	RetryPolicy policy = getPolicy(10, 100, 10000, Long.MAX_VALUE,
+		new Random(42));
+	for (int attempt = 1; attempt <= 8; attempt++) {
+	    long full = Math.min(10000, 100L << (attempt - 1));
+	    for (int i = 0; i < 100; i++) {
+		long delay = policy.getDelay(attempt, new Exception());
+		assertTrue(delay >= full / 2 && delay <= full,
+			"Attempt " + attempt + ": " + delay);
+	    }
+	}
+    }
+
+    /**
+     * TEST: BOUNDS OF THE JITTER (NONE AND ALL OF IT)
+     */
+    @Test
+    public void test_jitterBounds() throws Exception {
+	RetryPolicy shortest = getPolicy(10, 100, 10000, Long.MAX_VALUE,
+		new FixedRandom(0));
+	RetryPolicy longest = getPolicy(10, 100, 10000, Long.MAX_VALUE,
+		new FixedRandom(0.999999));
+	assertEquals(50, shortest.getDelay(1, new Exception()));
+	assertEquals(400, shortest.getDelay(4, new Exception()));
+	assertEquals(99, longest.getDelay(1, new Exception()));
+	assertEquals(799, longest.getDelay(4, new Exception()));
+    }
+
+    /**
+     * TEST: BACKOFF NEVER EXCEEDS THE MAX. DELAY
+     */
+    @Test
+    public void test_maxDelay() throws Exception {
+	RetryPolicy policy = getPolicy(100, 100, 3000, Long.MAX_VALUE,
+		new FixedRandom(0.999999));
+	assertEquals(2999, policy.getDelay(10, new Exception()));
+	assertEquals(2999, policy.getDelay(64, new Exception()));
+    }
+
+    /**
+     * TEST: A FAILING CALL IS GIVEN UP ON AFTER THE MAX. NUMBER OF ATTEMPTS
+     */
+    @Test
+    public void test_attemptCap() throws Exception {
+	RetryPolicy policy = getPolicy(3, 100, 10000, Long.MAX_VALUE,
+		new FixedRandom(0));
+	Exception last = assertThrows(TransientException.class,
+		() -> policy.call(failing(Integer.MAX_VALUE)));
+	assertEquals(3, calls);
+	assertEquals("Attempt 3", last.getMessage());
+	assertEquals(Arrays.asList(50L, 100L), sleeps);
+    }
+
+    /**
+     * TEST: A FAILING CALL IS GIVEN UP ON IF ITS NEXT RETRY WOULD EXCEED THE
+     * MAX. TIME
+     */
+    @Test
+    public void test_totalTimeCap() throws Exception {
+	RetryPolicy policy = getPolicy(10, 400, 10000, 1000,
+		new FixedRandom(0));
+	assertThrows(TransientException.class,
+		() -> policy.call(failing(Integer.MAX_VALUE)));
+	// Waits 200 and 400 ms: the next 800 ms would exceed the max. time
+	assertEquals(Arrays.asList(200L, 400L), sleeps);
+	assertEquals(3, calls);
+	assertEquals(600, now);
+    }
+
+    /**
+     * TEST: THE TIME STATED BY A FAILURE (RETRY-AFTER) IS WAITED INSTEAD OF
+     * THE BACKOFF
+     */
+    @Test
+    public void test_retryAfter() throws Exception {
+	RetryPolicy policy = getPolicy(5, 100, 1000, Long.MAX_VALUE,
+		new FixedRandom(0)).retryAfter(
+			e -> e instanceof RateLimitException ? 5000 : -1);
+	Callable<String> call = () -> {
+	    calls++;
+	    if (calls == 1) {
+		throw new RateLimitException();
+	    } else if (calls == 2) {
+		throw new TransientException("Attempt 2");
+	    }
+	    return "ok";
+	};
+	assertEquals("ok", policy.call(call));
+	// Stated time (above the max. delay), then backoff of the 2nd attempt
+	assertEquals(Arrays.asList(5000L, 100L), sleeps);
+    }
+
+    /**
+     * TEST: FAILURES NOT WORTH RETRYING (I.E. REACHED QUOTA) ARE NOT RETRIED
+     */
+    @Test
+    public void test_retryIfStopsOnQuota() throws Exception {
+	RetryPolicy policy = getPolicy(5, 100, 1000, Long.MAX_VALUE,
+		new FixedRandom(0))
+		.retryIf(e -> !(e instanceof QuotaException));
+	QuotaException quota = new QuotaException();
+	Exception thrown = assertThrows(QuotaException.class,
+		() -> policy.call(() -> {
+		    calls++;
+		    throw quota;
+		}));
+	assertSame(quota, thrown);
+	assertEquals(1, calls);
+	assertTrue(sleeps.isEmpty());
+	assertEquals(0, policy.getRetries());
+    }
+
+    /**
+     * TEST: RETRIES AND BACKOFF TIME ARE COUNTED ACROSS CALLS
+     */
+    @Test
+    public void test_counters() throws Exception {
+	RetryPolicy policy = getPolicy(5, 100, 1000, Long.MAX_VALUE,
+		new FixedRandom(0));
+	assertEquals("ok", policy.call(failing(2)));
+	assertEquals(2, policy.getRetries());
+	assertEquals(150, policy.getBackoffTime());
+
+	calls = 0;
+	assertEquals("ok", policy.call(failing(1)));
+	assertEquals(3, policy.getRetries());
+	assertEquals(200, policy.getBackoffTime());
+	assertEquals(now, policy.getBackoffTime());
+    }
+
+    /**
+     * TEST: A SUCCESSFUL CALL IS NEITHER RETRIED NOR DELAYED
+     */
+    @Test
+    public void test_noRetryOnSuccess() throws Exception {
+	RetryPolicy policy = getPolicy(5, 100, 1000, Long.MAX_VALUE,
+		new FixedRandom(0));
+	assertEquals("ok", policy.call(failing(0)));
+	assertEquals(1, calls);
+	assertEquals(0, policy.getRetries());
+	assertEquals(0, policy.getBackoffTime());
+    }
+
+    /*
+     * ######################## AUXILIARY METHODS ##############################
+     */
+
+    /*
+     * Policy whose clock only moves forward when it sleeps.
+     */
+    private RetryPolicy getPolicy(int maxAttempts, long baseDelay,
+	    long maxDelay, long maxTime, Random random) {
+	return new RetryPolicy(maxAttempts, baseDelay, maxDelay, maxTime,
+		() -> now, millis -> {
+		    sleeps.add(millis);
+		    now += millis;
+		}, random);
+    }
+
+    /*
+     * Call that fails a number of times before succeeding.
+     */
+    private Callable<String> failing(int failures) {
+	return () -> {
+	    calls++;
+	    if (calls <= failures) {
+		throw new TransientException("Attempt " + calls);
+	    }
+	    return "ok";
+	};
+    }
+
+    /*
+     * Jitter that is always the same.
+     */
+    private static class FixedRandom extends Random {
+
+	private static final long serialVersionUID = 1L;
+	private final double value;
+
+	FixedRandom(double value) {
+	    this.value = value;
+	}
+
+	@Override
+	public double nextDouble() {
+	    return value;
+	}
+
+    }
+
+    private static class TransientException extends Exception {
+
+	private static final long serialVersionUID = 1L;
+
+	TransientException(String message) {
+	    super(message);
+	}
+
+    }
+
+    private static class RateLimitException extends Exception {
+
+	private static final long serialVersionUID = 1L;
+
+    }
+
+    private static class QuotaException extends Exception {
+
+	private static final long serialVersionUID = 1L;
+
+    }
+
+}